@@ -6,10 +6,17 @@ import de.yanwittmann.menter.interpreter.ModuleOptions;
 import de.yanwittmann.menter.interpreter.structure.GlobalContext;
 import de.yanwittmann.menter.interpreter.structure.Import;
 import de.yanwittmann.menter.interpreter.structure.Module;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
+import de.yanwittmann.menter.io.ModuleArchive;
+import de.yanwittmann.menter.io.ModuleIndex;
+import de.yanwittmann.menter.io.ModuleResourceIndex;
+import de.yanwittmann.menter.io.SourceReader;
+import de.yanwittmann.menter.io.SyntaxTreeCache;
 import de.yanwittmann.menter.lexer.Lexer;
 import de.yanwittmann.menter.lexer.Token;
 import de.yanwittmann.menter.operator.Operators;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
 import de.yanwittmann.menter.parser.Parser;
 import de.yanwittmann.menter.parser.ParserNode;
 import org.apache.commons.io.FileUtils;
@@ -18,8 +25,15 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 public class EvalRuntime {
 
@@ -27,13 +41,30 @@ public class EvalRuntime {
 
     protected final Lexer lexer;
     protected final Parser parser;
+    /**
+     * Use {@link #addContext(GlobalContext)} and {@link #removeContext(GlobalContext)} to modify the contexts, so that
+     * the indices by source and module name are kept up to date.
+     */
     protected final List<GlobalContext> globalContexts = new ArrayList<>();
+    private final Map<Object, List<GlobalContext>> contextsBySource = new HashMap<>();
+    private final Map<String, List<Module>> modulesByName = new HashMap<>();
     protected final Map<GlobalContext, ParserNode> unfinishedGlobalContextRootObjects = new HashMap<>();
     private final ModuleOptions moduleOptions = new ModuleOptions();
+    private final NativeFunctionRegistry nativeFunctionRegistry = new NativeFunctionRegistry(NativeFunctionRegistry.getGlobal());
 
     private final List<File> modulePaths = new ArrayList<>();
     private final Map<String, File> availableMenterModules = new HashMap<>();
+    private final List<ModuleResourceIndex> moduleResources = new ArrayList<>();
+    private final Set<String> loadedResources = new HashSet<>();
     private final Set<File> loadedFiles = new HashSet<>();
+    private final Map<File, GlobalContext> fileContexts = new HashMap<>();
+    private final Map<GlobalContext, CompactSyntaxTree> contextTrees = new HashMap<>();
+    private WatchService fileWatchService;
+    private SyntaxTreeCache syntaxTreeCache;
+    private ModuleIndex moduleIndex = new ModuleIndex(null);
+    private int loaderThreadCount = Runtime.getRuntime().availableProcessors();
+    private boolean lazyModuleInitialization = true;
+    private int evaluationThreadCount = 1;
 
     public EvalRuntime(Operators operators) {
         lexer = new Lexer(operators);
@@ -53,16 +84,65 @@ public class EvalRuntime {
         return parser;
     }
 
+    /**
+     * Sets the directory in which the parsed syntax trees of loaded sources are cached between runs, or disables the
+     * cache if <code>null</code> is passed.
+     */
+    public void setSyntaxTreeCache(File directory) {
+        syntaxTreeCache = directory == null ? null : new SyntaxTreeCache(directory, lexer.getOperators());
+    }
+
+    public SyntaxTreeCache getSyntaxTreeCache() {
+        return syntaxTreeCache;
+    }
+
+    /**
+     * Sets the file in which the exports and imports of the files on the module path are persisted between runs, or
+     * only keeps them in memory if <code>null</code> is passed.
+     */
+    public void setModuleIndex(File indexFile) {
+        moduleIndex = new ModuleIndex(indexFile);
+    }
+
+    public ModuleIndex getModuleIndex() {
+        return moduleIndex;
+    }
+
+    /**
+     * Adds a directory or source file to search for modules in. Jars are added as {@link ModuleResourceIndex}.
+     */
     public void addModulePath(File modulePath) {
-        modulePaths.add(modulePath);
+        if (ModuleResourceIndex.isJar(modulePath)) {
+            addModuleResources(ModuleResourceIndex.ofJar(modulePath));
+        } else {
+            modulePaths.add(modulePath);
+        }
     }
 
+    /**
+     * Paths starting with {@value ModuleResourceIndex#CLASSPATH_PREFIX} are added as resource directory of the
+     * classpath, all other paths as file.
+     */
     public void addModulePath(String modulePath) {
-        addModulePath(new File(modulePath));
+        if (modulePath.startsWith(ModuleResourceIndex.CLASSPATH_PREFIX)) {
+            addModuleResources(ModuleResourceIndex.ofClasspath(modulePath));
+        } else {
+            addModulePath(new File(modulePath));
+        }
     }
 
     public void addModulePaths(List<File> modulePaths) {
-        this.modulePaths.addAll(modulePaths);
+        for (File modulePath : modulePaths) {
+            addModulePath(modulePath);
+        }
+    }
+
+    /**
+     * Modules that cannot be found on the module path are loaded from the resources listed in the added indices, in
+     * the order the indices have been added.
+     */
+    public void addModuleResources(ModuleResourceIndex moduleResourceIndex) {
+        moduleResources.add(moduleResourceIndex);
     }
 
     public void removeModulePath(File modulePath) {
@@ -70,80 +150,588 @@ public class EvalRuntime {
     }
 
     public boolean doesModuleExist(String moduleName) {
-        for (GlobalContext globalContext : globalContexts) {
-            if (globalContext.getModules().stream().anyMatch(module -> module.getName().equals(moduleName))) {
-                return true;
+        return modulesByName.containsKey(moduleName);
+    }
+
+    public Set<String> listAllExportedModules() {
+        return new HashSet<>(modulesByName.keySet());
+    }
+
+    /**
+     * @return the most recently created module with the given name that is exported by one of the contexts or
+     * <code>null</code> if there is none.
+     */
+    public Module findModule(String moduleName) {
+        final List<Module> modules = modulesByName.get(moduleName);
+        if (modules == null) return null;
+
+        Module latest = null;
+        for (Module module : modules) {
+            if (latest == null || module.getCreationTime() > latest.getCreationTime()) {
+                latest = module;
             }
         }
-        return false;
+        return latest;
     }
 
-    public Set<String> listAllExportedModules() {
-        final Set<String> exportedModules = new HashSet<>();
-        for (GlobalContext globalContext : globalContexts) {
-            globalContext.getModules().stream().map(Module::getName).forEach(exportedModules::add);
+    /**
+     * @return the first context that has been added with the given source or <code>null</code> if there is none.
+     */
+    public GlobalContext findContext(Object source) {
+        final List<GlobalContext> contexts = contextsBySource.get(source);
+        return contexts == null ? null : contexts.get(0);
+    }
+
+    protected void addContext(GlobalContext globalContext) {
+        globalContexts.add(globalContext);
+        contextsBySource.computeIfAbsent(globalContext.getSource(), source -> new ArrayList<>(1)).add(globalContext);
+        indexModules(globalContext);
+    }
+
+    protected void removeContext(GlobalContext globalContext) {
+        if (!globalContexts.remove(globalContext)) return;
+
+        final List<GlobalContext> contexts = contextsBySource.get(globalContext.getSource());
+        if (contexts != null) {
+            contexts.remove(globalContext);
+            if (contexts.isEmpty()) contextsBySource.remove(globalContext.getSource());
+        }
+
+        for (Module module : globalContext.getModules()) {
+            final List<Module> modules = modulesByName.get(module.getName());
+            if (modules != null) {
+                modules.remove(module);
+                if (modules.isEmpty()) modulesByName.remove(module.getName());
+            }
+        }
+    }
+
+    /**
+     * Adds the modules of the context to the index that are not part of it yet. Has to be called whenever modules are
+     * added to a context that has already been added.
+     */
+    private void indexModules(GlobalContext globalContext) {
+        for (Module module : globalContext.getModules()) {
+            final List<Module> modules = modulesByName.computeIfAbsent(module.getName(), name -> new ArrayList<>(1));
+            if (!modules.contains(module)) {
+                modules.add(module);
+            }
         }
-        return exportedModules;
     }
 
     public void loadFile(File file) {
         loadFiles(Collections.singletonList(file));
     }
 
-    public void loadFiles(List<File> files) {
-        final List<File> filesToLoad = new ArrayList<>();
+    /**
+     * Loads the files and the module files they import. All files are lexed and parsed concurrently, but their
+     * contexts are registered in the same order as if they were loaded one after the other, with imported files
+     * before the files that import them.
+     */
+    public synchronized void loadFiles(List<File> files) {
+        final List<File> orderedFiles = new ArrayList<>();
+        final List<CharSequence> orderedCode = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile() && ModuleArchive.isArchive(file)) {
+                loadArchive(file);
+            } else {
+                collectFilesToLoad(file, orderedFiles, orderedCode);
+            }
+        }
+
+        final List<ParserNode> rootNodes = parseSources(orderedCode);
+        for (int i = 0; i < orderedFiles.size(); i++) {
+            final GlobalContext globalContext = registerContext(rootNodes.get(i), orderedFiles.get(i).getName());
+            fileContexts.put(orderedFiles.get(i).getAbsoluteFile(), globalContext);
+            watchFile(orderedFiles.get(i));
+        }
+    }
+
+    /**
+     * Registers the contexts of all sources in the archive without lexing and parsing them. Modules that the sources
+     * import but that are not part of the archive are resolved from the module path as usual.
+     *
+     * @throws MenterExecutionException if the archive cannot be read or has been compiled using a different operator
+     *                                  configuration
+     */
+    public synchronized void loadArchive(File file) {
+        if (loadedFiles.contains(file)) return;
 
+        final ModuleArchive archive;
+        try {
+            archive = ModuleArchive.read(file, lexer.getOperators());
+        } catch (IOException e) {
+            throw new MenterExecutionException("Could not load module archive '" + file.getAbsolutePath() + "'.", e);
+        }
+        loadedFiles.add(file);
+
+        final CompactSyntaxTree autoImports = parseAutoImports();
+        for (ModuleArchive.Entry entry : archive.getEntries()) {
+            registerContext(addAutoImports(entry.getTree().toParserNode(), autoImports), entry.getSourceName());
+        }
+    }
+
+    /**
+     * Parses the files and writes them into a single archive that can be loaded using {@link #loadArchive(File)}.
+     * Directories are searched for source files recursively, imported modules are not added to the archive. The
+     * sources are compiled without the auto imports of this runtime, those of the loading runtime are added when the
+     * archive is loaded.
+     */
+    public void compileArchive(List<File> files, File output) {
+        final List<File> sourceFiles = new ArrayList<>();
         for (File file : files) {
             if (file.isDirectory()) {
-                filesToLoad.addAll(FileUtils.listFiles(file, new String[]{"mtr"}, true));
+                sourceFiles.addAll(FileUtils.listFiles(file, new String[]{"mtr"}, true));
             } else {
-                filesToLoad.add(file);
+                sourceFiles.add(file);
             }
         }
 
-        for (File file : filesToLoad) {
-            if (loadedFiles.contains(file)) continue;
-            loadedFiles.add(file);
+        final List<ModuleArchive.Entry> entries = new ArrayList<>();
+        try {
+            for (File file : sourceFiles) {
+                final CharSequence code = SourceReader.read(file);
+                final ParserNode rootNode = parser.parse(lexer.parse(code));
+                entries.add(new ModuleArchive.Entry(file.getName(), ModuleIndex.findExports(code), ModuleIndex.findImports(code), CompactSyntaxTree.of(rootNode)));
+            }
+            new ModuleArchive(entries).write(output, lexer.getOperators());
+        } catch (IOException e) {
+            throw new MenterExecutionException("Could not compile module archive '" + output.getAbsolutePath() + "'.", e);
+        }
+    }
 
+    /**
+     * Loads the resource that exports the module from the first added {@link ModuleResourceIndex} that lists it,
+     * after the modules the resource imports. Resources are only loaded once, even if they export multiple modules.
+     *
+     * @return whether a resource exports the module
+     * @throws MenterExecutionException if the resource cannot be read
+     */
+    public synchronized boolean loadModuleResource(String moduleName) {
+        for (ModuleResourceIndex index : moduleResources) {
+            final String resource;
             try {
-                final List<File> dependingFilesFromImports = findDependingFilesFromImports(file);
-                dependingFilesFromImports.forEach(this::loadFile);
-
-                loadContext(FileUtils.readLines(file, StandardCharsets.UTF_8), file.getName());
+                resource = index.getModules().get(moduleName);
+            } catch (IOException e) {
+                LOG.warn("Could not read module resource index of " + index.getDescription() + ": " + e.getMessage());
+                continue;
+            }
+            if (resource == null) continue;
+            if (!loadedResources.add(index.getDescription() + "!/" + resource)) return true;
 
-                availableMenterModules.entrySet().removeIf(entry -> entry.getValue().equals(file));
+            try {
+                if (ModuleResourceIndex.isArchive(resource)) {
+                    final ModuleArchive archive = index.readArchive(resource, lexer.getOperators());
+                    for (ModuleArchive.Entry entry : archive.getEntries()) {
+                        loadFiles(findDependingFilesFromImports(entry.getImports()));
+                    }
+                    final CompactSyntaxTree autoImports = parseAutoImports();
+                    for (ModuleArchive.Entry entry : archive.getEntries()) {
+                        registerContext(addAutoImports(entry.getTree().toParserNode(), autoImports), entry.getSourceName());
+                    }
+                } else {
+                    final CharSequence code = index.readSource(resource);
+                    loadFiles(findDependingFilesFromImports(ModuleIndex.findImports(code)));
+                    registerContext(parseSource(code), resource.substring(resource.lastIndexOf('/') + 1));
+                }
             } catch (IOException e) {
-                throw new MenterExecutionException("Could not load file '" + file.getAbsolutePath() + "'.", e);
+                throw new MenterExecutionException("Could not load module resource '" + resource + "' from " + index.getDescription() + ".", e);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void collectFilesToLoad(File file, List<File> orderedFiles, List<CharSequence> orderedCode) {
+        if (file.isDirectory()) {
+            for (File child : FileUtils.listFiles(file, new String[]{"mtr"}, true)) {
+                collectFilesToLoad(child, orderedFiles, orderedCode);
+            }
+            return;
+        }
+
+        if (loadedFiles.contains(file)) return;
+        loadedFiles.add(file);
+
+        try {
+            final CharSequence code = SourceReader.read(file);
+            for (File dependingFile : findDependingFilesFromLines(SourceReader.findLinesStartingWith(code, "import"))) {
+                collectFilesToLoad(dependingFile, orderedFiles, orderedCode);
             }
+
+            orderedFiles.add(file);
+            orderedCode.add(code);
+
+            availableMenterModules.entrySet().removeIf(entry -> entry.getValue().equals(file));
+        } catch (IOException e) {
+            throw new MenterExecutionException("Could not load file '" + file.getAbsolutePath() + "'.", e);
         }
     }
 
+    private List<ParserNode> parseSources(List<CharSequence> sources) {
+        final List<ParserNode> rootNodes = new ArrayList<>(sources.size());
+        if (sources.size() < 2 || loaderThreadCount < 2) {
+            for (CharSequence source : sources) {
+                rootNodes.add(parseSource(source));
+            }
+            return rootNodes;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(loaderThreadCount, sources.size()));
+        try {
+            final List<Future<ParserNode>> futures = new ArrayList<>(sources.size());
+            for (CharSequence source : sources) {
+                futures.add(executor.submit(() -> parseSource(source)));
+            }
+
+            // wait in order, so that the error of the first file that fails is reported
+            for (Future<ParserNode> future : futures) {
+                try {
+                    rootNodes.add(awaitResult(future));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MenterExecutionException("Interrupted while parsing sources", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return rootNodes;
+    }
+
+    /**
+     * Sets the maximum amount of threads that are used to lex and parse files in {@link #loadFiles(List)}. Defaults
+     * to the number of available processors.
+     */
+    public void setLoaderThreadCount(int loaderThreadCount) {
+        if (loaderThreadCount < 1) {
+            throw new IllegalArgumentException("loaderThreadCount must be >= 1");
+        }
+        this.loaderThreadCount = loaderThreadCount;
+    }
+
+    /**
+     * If enabled, contexts that export modules are only evaluated when one of their modules is first accessed, instead
+     * of in {@link #finishLoadingContexts()}. Contexts without modules are always evaluated immediately.
+     */
+    public void setLazyModuleInitialization(boolean lazyModuleInitialization) {
+        this.lazyModuleInitialization = lazyModuleInitialization;
+    }
+
+    public boolean isLazyModuleInitialization() {
+        return lazyModuleInitialization;
+    }
+
     public void loadContext(List<String> str, String source) {
-        if (moduleOptions.hasAutoImports()) {
-            str.add(0, moduleOptions.getAutoImportsAsString());
+        loadContext(String.join("\n", str), source);
+    }
+
+    public void loadContext(CharSequence code, String source) {
+        registerContext(parseSource(code), source);
+    }
+
+    protected ParserNode parseSource(CharSequence code) {
+        final CharSequence fullCode = moduleOptions.hasAutoImports()
+                ? SourceReader.concat(moduleOptions.getAutoImportsAsString() + "\n", code)
+                : code;
+
+        ParserNode rootNode = syntaxTreeCache == null ? null : syntaxTreeCache.load(fullCode);
+        if (rootNode == null) {
+            rootNode = parser.parse(lexer.parse(fullCode));
+            if (syntaxTreeCache != null) {
+                syntaxTreeCache.store(fullCode, rootNode);
+            }
         }
-        final List<Token> tokens = lexer.parse(str);
-        final ParserNode rootNode = parser.parse(tokens);
+        return rootNode;
+    }
+
+    /**
+     * @return the import statements of the auto imports, which are parsed once for all trees of an archive, or
+     * <code>null</code> if there are no auto imports.
+     */
+    private CompactSyntaxTree parseAutoImports() {
+        if (!moduleOptions.hasAutoImports()) return null;
+        return CompactSyntaxTree.of(parser.parse(lexer.parse(moduleOptions.getAutoImportsAsString())));
+    }
+
+    /**
+     * Adds a copy of the auto import statements in front of the statements of a tree that has been parsed without
+     * them, like the trees in a {@link ModuleArchive}.
+     */
+    private static ParserNode addAutoImports(ParserNode rootNode, CompactSyntaxTree autoImports) {
+        if (autoImports != null) {
+            rootNode.getChildren().addAll(0, autoImports.toParserNode().getChildren());
+        }
+        return rootNode;
+    }
 
+    protected GlobalContext registerContext(ParserNode rootNode, String source) {
+        final ParserNode statements = copyStatements(rootNode);
+        final GlobalContext globalContext = createContext(rootNode, source);
+        keepForReload(globalContext, statements);
+        addContext(globalContext);
+        unfinishedGlobalContextRootObjects.put(globalContext, rootNode);
+        return globalContext;
+    }
+
+    private GlobalContext createContext(ParserNode rootNode, Object source) {
         final GlobalContext globalContext = new GlobalContext(source);
+        globalContext.setNativeFunctionRegistry(nativeFunctionRegistry);
         globalContext.findImportExportStatements(rootNode, moduleOptions);
+        return globalContext;
+    }
 
-        globalContexts.add(globalContext);
-        unfinishedGlobalContextRootObjects.put(globalContext, rootNode);
+    /**
+     * The import and export statements are removed from the tree when a context is created, so the statements are
+     * copied before to be able to create the context again.
+     */
+    private static ParserNode copyStatements(ParserNode rootNode) {
+        return new ParserNode(ParserNode.NodeType.ROOT, null, new ArrayList<>(rootNode.getChildren()));
     }
 
-    private List<String> detectExportsInFile(File file) {
+    /**
+     * Only the bodies of modules that import other modules are evaluated again when an imported module is reloaded, so
+     * the statements of all other contexts are not kept. The statements are kept as a {@link CompactSyntaxTree}, from
+     * which a new tree is created every time the context is created again.
+     */
+    private void keepForReload(GlobalContext globalContext, ParserNode statements) {
+        if (!globalContext.getModules().isEmpty() && !globalContext.getImports().isEmpty()) {
+            contextTrees.put(globalContext, CompactSyntaxTree.of(statements));
+        }
+    }
+
+    /**
+     * Parses the loaded file again and replaces its context with a new one.<br>
+     * Only module bodies are evaluated again: the context of the file and the contexts of the modules that directly or
+     * indirectly import one of its modules are created again from their statements, so their side effects happen
+     * again as well. All other contexts that import one of the replaced modules, like the main file or the contexts of
+     * {@link #evaluateInContextOf(String, String)}, are not evaluated again; their imports are bound to the new modules
+     * of the same name, but values they have already computed from the old modules are kept. Forks keep the modules
+     * they have been created with.<br>
+     * The new contexts are evaluated before they are published. They then replace the old contexts and all imports are
+     * rebound at once, while holding the lock of this runtime that is also held while loading files and resolving
+     * the imports of evaluated expressions, so that imports are never resolved against a partially reloaded state.
+     * Expressions that are being evaluated while the file is reloaded see the new modules once the reload has been
+     * published.
+     *
+     * @return the new context of the file
+     * @throws MenterExecutionException if the file has not been loaded, cannot be parsed or evaluated or no longer
+     *                                  exports a module that is imported by another context. Nothing is replaced in
+     *                                  this case.
+     */
+    public GlobalContext reloadFile(File file) {
+        final File absoluteFile = file.getAbsoluteFile();
+        if (!isLoadedFile(absoluteFile)) {
+            throw new MenterExecutionException("Cannot reload file '" + file.getAbsolutePath() + "', it has not been loaded.");
+        }
+
+        final ParserNode rootNode;
         try {
-            final List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
-            final List<String> exports = new ArrayList<>();
-            for (String line : lines) {
-                if (line.startsWith("export ")) {
-                    // export [symbol] as moduleName
-                    final String[] split = line.split(" ");
-                    exports.add(split[split.length - 1]);
+            rootNode = parseSource(SourceReader.read(file));
+        } catch (IOException e) {
+            throw new MenterExecutionException("Could not reload file '" + file.getAbsolutePath() + "'.", e);
+        }
+
+        synchronized (this) {
+            final GlobalContext oldContext = fileContexts.get(absoluteFile);
+            if (oldContext == null) {
+                throw new MenterExecutionException("Cannot reload file '" + file.getAbsolutePath() + "', it has not been loaded.");
+            }
+
+            // create all contexts that are evaluated again, without registering them yet
+            final Map<GlobalContext, GlobalContext> replacements = new LinkedHashMap<>();
+            final Map<GlobalContext, ParserNode> evaluatedRootNodes = new HashMap<>();
+            final Map<GlobalContext, ParserNode> reloadStatements = new HashMap<>();
+            final ParserNode statements = copyStatements(rootNode);
+            final GlobalContext newContext = createContext(rootNode, file.getName());
+            replacements.put(oldContext, newContext);
+            evaluatedRootNodes.put(newContext, rootNode);
+            reloadStatements.put(newContext, statements);
+
+            final Set<GlobalContext> importers = findTransitiveImporters(oldContext);
+            for (GlobalContext importer : importers) {
+                final CompactSyntaxTree importerTree = contextTrees.get(importer);
+                if (importerTree == null) continue;
+                final ParserNode importerRootNode = importerTree.toParserNode();
+                final ParserNode importerStatements = copyStatements(importerRootNode);
+                final GlobalContext newImporter = createContext(importerRootNode, importer.getSource());
+                replacements.put(importer, newImporter);
+                evaluatedRootNodes.put(newImporter, importerRootNode);
+                reloadStatements.put(newImporter, importerStatements);
+            }
+
+            // check that all imports can be bound to the new modules before anything is replaced
+            final Map<Module, Module> replacedModules = new HashMap<>();
+            for (Map.Entry<GlobalContext, GlobalContext> replacement : replacements.entrySet()) {
+                for (Module module : replacement.getKey().getModules()) {
+                    replacement.getValue().getModules().stream()
+                            .filter(newModule -> newModule.getName().equals(module.getName()))
+                            .findFirst()
+                            .ifPresent(newModule -> replacedModules.put(module, newModule));
+                }
+            }
+            for (GlobalContext globalContext : globalContexts) {
+                for (Import anImport : globalContext.getImports()) {
+                    if (anImport.getModule() != null && anImport.getModule().getParentContext() == oldContext && !replacedModules.containsKey(anImport.getModule())) {
+                        throw new MenterExecutionException("Cannot reload file '" + file.getAbsolutePath() + "', it no longer exports the module [" + anImport.getName() + "] imported by " + globalContext.getSource());
+                    }
+                }
+            }
+
+            // the recreated contexts import the same modules as before, the reloaded file may import different ones
+            for (Map.Entry<GlobalContext, GlobalContext> replacement : replacements.entrySet()) {
+                for (Import anImport : replacement.getValue().getImports()) {
+                    replacement.getKey().getImports().stream()
+                            .filter(oldImport -> oldImport.getName().equals(anImport.getName()) && oldImport.getModule() != null)
+                            .findFirst()
+                            .ifPresent(oldImport -> anImport.setReferencingModule(replacedModules.getOrDefault(oldImport.getModule(), oldImport.getModule())));
+                }
+            }
+            evaluateReplacementContexts(new ArrayList<>(replacements.values()), evaluatedRootNodes);
+
+            // publish the new contexts and modules
+            for (Map.Entry<GlobalContext, GlobalContext> replacement : replacements.entrySet()) {
+                final int index = globalContexts.indexOf(replacement.getKey());
+                removeContext(replacement.getKey());
+                addContext(replacement.getValue());
+                globalContexts.remove(replacement.getValue());
+                globalContexts.add(index, replacement.getValue());
+
+                contextTrees.remove(replacement.getKey());
+                keepForReload(replacement.getValue(), reloadStatements.get(replacement.getValue()));
+            }
+            fileContexts.replaceAll((loadedFile, context) -> replacements.getOrDefault(context, context));
+            for (GlobalContext globalContext : globalContexts) {
+                for (Import anImport : globalContext.getImports()) {
+                    final Module newModule = replacedModules.get(anImport.getModule());
+                    if (newModule != null) {
+                        anImport.setReferencingModule(newModule);
+                    }
                 }
             }
-            return exports;
+
+            LOG.info("Reloaded [{}], evaluated [{}] importing modules again and rebound [{}] importing contexts", file.getName(), replacements.size() - 1, importers.size() - (replacements.size() - 1));
+            return newContext;
+        }
+    }
+
+    private void evaluateReplacementContexts(List<GlobalContext> contexts, Map<GlobalContext, ParserNode> rootNodes) {
+        final Map<GlobalContext, Set<GlobalContext>> dependencies = new LinkedHashMap<>();
+        for (GlobalContext globalContext : contexts) {
+            final Set<GlobalContext> contextDependencies = new LinkedHashSet<>();
+            for (Import anImport : globalContext.getImports()) {
+                if (anImport.getModule() != null && contexts.contains(anImport.getModule().getParentContext())) {
+                    contextDependencies.add(anImport.getModule().getParentContext());
+                }
+            }
+            dependencies.put(globalContext, contextDependencies);
+        }
+
+        for (GlobalContext globalContext : sortContextsByDependencies(contexts, dependencies)) {
+            globalContext.resolveImports(this, globalContexts);
+            if (lazyModuleInitialization && !globalContext.getModules().isEmpty()) {
+                globalContext.deferEvaluation(rootNodes.get(globalContext));
+            } else {
+                globalContext.evaluate(rootNodes.get(globalContext));
+            }
+        }
+    }
+
+    private synchronized boolean isLoadedFile(File absoluteFile) {
+        return fileContexts.containsKey(absoluteFile);
+    }
+
+    private Set<GlobalContext> findTransitiveImporters(GlobalContext context) {
+        final Set<GlobalContext> importers = new LinkedHashSet<>();
+        final Deque<GlobalContext> queue = new ArrayDeque<>();
+        queue.add(context);
+
+        while (!queue.isEmpty()) {
+            final GlobalContext imported = queue.poll();
+            for (GlobalContext globalContext : globalContexts) {
+                if (globalContext == context || importers.contains(globalContext)) continue;
+                for (Import anImport : globalContext.getImports()) {
+                    if (anImport.getModule() != null && anImport.getModule().getParentContext() == imported) {
+                        importers.add(globalContext);
+                        queue.add(globalContext);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return importers;
+    }
+
+    /**
+     * Watches the directories of all loaded files, including the ones loaded later, and calls
+     * {@link #reloadFile(File)} for every loaded file that is modified. The files are reloaded on a daemon thread.
+     */
+    public synchronized void startWatchingFiles() throws IOException {
+        if (fileWatchService != null) return;
+        fileWatchService = FileSystems.getDefault().newWatchService();
+        for (File file : fileContexts.keySet()) {
+            watchFile(file);
+        }
+
+        final WatchService watchService = fileWatchService;
+        final Thread watcher = new Thread(() -> watchFiles(watchService), "menter-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatchingFiles() {
+        if (fileWatchService == null) return;
+        try {
+            fileWatchService.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close file watch service: " + e.getMessage());
+        }
+        fileWatchService = null;
+    }
+
+    private void watchFile(File file) {
+        if (fileWatchService == null) return;
+        try {
+            file.getAbsoluteFile().getParentFile().toPath().register(fileWatchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            LOG.warn("Cannot watch directory of " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private void watchFiles(WatchService watchService) {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                final Path directory = (Path) key.watchable();
+
+                // editors often write a file in multiple steps, so every file is only reloaded once per batch
+                final Set<File> changedFiles = new LinkedHashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path) {
+                        changedFiles.add(directory.resolve((Path) event.context()).toFile().getAbsoluteFile());
+                    }
+                }
+                key.reset();
+
+                for (File changedFile : changedFiles) {
+                    if (!isLoadedFile(changedFile)) continue;
+                    try {
+                        reloadFile(changedFile);
+                    } catch (RuntimeException e) {
+                        LOG.error("Failed to reload " + changedFile.getAbsolutePath(), e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watch service has been stopped
+        }
+    }
+
+    private List<String> detectExportsInFile(File file) {
+        try {
+            return moduleIndex.getFile(file).getExports();
         } catch (IOException e) {
             LOG.error("Failed to read file in order to detect import statements " + file.getAbsolutePath());
         } catch (Exception e) {
@@ -158,11 +746,12 @@ public class EvalRuntime {
                 if (modulePath.isFile()) {
                     detectExportsInFile(modulePath).forEach(symbol -> availableMenterModules.put(symbol, modulePath));
                 } else if (modulePath.isDirectory()) {
-                    for (File file : FileUtils.listFiles(modulePath, new String[]{"mtr"}, false)) {
+                    for (File file : moduleIndex.listModuleFiles(modulePath)) {
                         detectExportsInFile(file).forEach(symbol -> availableMenterModules.put(symbol, file));
                     }
                 }
             }
+            moduleIndex.save();
 
             // remove all modules that are already imported
             listAllExportedModules().forEach(availableMenterModules::remove);
@@ -172,8 +761,7 @@ public class EvalRuntime {
     }
 
     public List<File> findDependingFilesFromImports(File file) throws IOException {
-        final List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
-        return findDependingFilesFromLines(lines);
+        return findDependingFilesFromImports(moduleIndex.getFile(file).getImports());
     }
 
     public List<File> findDependingFilesFromLines(Collection<String> lines) throws IOException {
@@ -213,88 +801,264 @@ public class EvalRuntime {
                 // remove the module from the available modules to prevent loading it twice
                 availableModules.remove(moduleName);
                 dependingFiles.addAll(findDependingFilesFromImports(file));
+            } else {
+                // resources have no file that could be returned, so their contexts are registered right away
+                loadModuleResource(moduleName);
             }
         }
 
         return dependingFiles;
     }
 
-    public void finishLoadingContexts() {
+    public synchronized void finishLoadingContexts() {
+        // resolving the imports can register the contexts of imported module resources
+        for (int i = 0; i < globalContexts.size(); i++) {
+            globalContexts.get(i).resolveImports(this, globalContexts);
+        }
+
+        final List<GlobalContext> unfinishedGlobalContexts = new ArrayList<>();
         for (GlobalContext globalContext : globalContexts) {
-            globalContext.resolveImports(this, globalContexts);
+            if (unfinishedGlobalContextRootObjects.containsKey(globalContext)) {
+                unfinishedGlobalContexts.add(globalContext);
+            }
         }
+        if (unfinishedGlobalContexts.isEmpty()) return;
 
         // find the order in which the global contexts have to be executed by using the imports
-        final List<GlobalContext> orderedGlobalContexts = new ArrayList<>();
-        final List<GlobalContext> globalContextsToCheck = new ArrayList<>(globalContexts);
+        final Map<GlobalContext, Set<GlobalContext>> dependencies = findContextDependencies(unfinishedGlobalContexts);
+        final List<GlobalContext> orderedGlobalContexts = sortContextsByDependencies(unfinishedGlobalContexts, dependencies);
 
-        for (int i = globalContextsToCheck.size() - 1; i >= 0; i--) {
-            final GlobalContext checkContext = globalContextsToCheck.get(i);
-            if (!unfinishedGlobalContextRootObjects.containsKey(checkContext)) {
-                orderedGlobalContexts.add(checkContext);
-                globalContextsToCheck.remove(checkContext);
+        if (MenterDebugger.logInterpreterEvaluationOrder) {
+            LOG.info("Determined the following evaluation order for the global contexts:");
+            for (GlobalContext globalContext : orderedGlobalContexts) {
+                LOG.info(" - " + globalContext.getSource());
             }
         }
 
-        int iteration = 0;
-        final int maxIterations = globalContexts.size() * 2;
-        while (globalContextsToCheck.size() > 0) {
-            if (iteration > maxIterations) {
-                throw new MenterExecutionException("Circular dependency in imports found. Could not resolve the order of the global contexts.\n" +
-                                                   unfinishedGlobalContextRootObjects.keySet().stream()
-                                                           .map(GlobalContext::getSource)
-                                                           .reduce((s1, s2) -> s1 + "\n" + s2)
-                                                           .orElse("No source found."));
+        // execute the global contexts in the correct order
+        if (evaluationThreadCount < 2 || orderedGlobalContexts.size() < 2) {
+            for (GlobalContext globalContext : orderedGlobalContexts) {
+                final ParserNode rootNode = prepareContextEvaluation(globalContext);
+                if (rootNode != null) {
+                    globalContext.evaluate(rootNode);
+                }
             }
-            iteration++;
+        } else {
+            evaluateContextsConcurrently(orderedGlobalContexts, dependencies);
+        }
 
-            final GlobalContext globalContext = globalContextsToCheck.get(iteration % globalContextsToCheck.size());
-            if (globalContext.getImports().size() == 0) {
-                orderedGlobalContexts.add(globalContext);
-                globalContextsToCheck.remove(globalContext);
-            } else {
-                boolean allImportsLoaded = true;
+        unfinishedGlobalContextRootObjects.clear();
+    }
 
-                for (Import checkImport : globalContext.getImports()) {
-                    final boolean moduleHasBeenAssignedButNotLoaded = checkImport.getModule() != null && !orderedGlobalContexts.contains(checkImport.getModule().getParentContext());
+    /**
+     * Sets the maximum amount of threads that are used to evaluate contexts whose imported contexts have all been
+     * evaluated in {@link #finishLoadingContexts()}. Defaults to <code>1</code>, which evaluates all contexts on the
+     * calling thread. Native functions that are called while the contexts are evaluated must be thread-safe if this
+     * is increased.
+     */
+    public void setEvaluationThreadCount(int evaluationThreadCount) {
+        if (evaluationThreadCount < 1) {
+            throw new IllegalArgumentException("evaluationThreadCount must be >= 1");
+        }
+        this.evaluationThreadCount = evaluationThreadCount;
+    }
 
-                    final boolean moduleHasNotBeenAssignedYet = checkImport.getModule() == null && orderedGlobalContexts.stream().noneMatch(i -> {
-                        final String moduleName = checkImport.getName();
-                        return i.getModules().stream().anyMatch(m -> m.getName().equals(moduleName));
-                    });
+    /**
+     * @return the unfinished contexts every unfinished context imports a module from, in the order of the contexts.
+     */
+    private Map<GlobalContext, Set<GlobalContext>> findContextDependencies(List<GlobalContext> unfinishedGlobalContexts) {
+        final Map<String, List<GlobalContext>> contextsByModuleName = new HashMap<>();
+        for (GlobalContext globalContext : globalContexts) {
+            for (Module module : globalContext.getModules()) {
+                contextsByModuleName.computeIfAbsent(module.getName(), name -> new ArrayList<>()).add(globalContext);
+            }
+        }
 
-                    if (moduleHasBeenAssignedButNotLoaded || moduleHasNotBeenAssignedYet) {
-                        allImportsLoaded = false;
-                        break;
-                    }
+        final Set<GlobalContext> unfinished = new HashSet<>(unfinishedGlobalContexts);
+        final Map<GlobalContext, Set<GlobalContext>> dependencies = new LinkedHashMap<>();
+        for (GlobalContext globalContext : unfinishedGlobalContexts) {
+            final Set<GlobalContext> contextDependencies = new LinkedHashSet<>();
+
+            for (Import checkImport : globalContext.getImports()) {
+                final List<GlobalContext> importedContexts;
+                if (checkImport.getModule() != null) {
+                    importedContexts = Collections.singletonList(checkImport.getModule().getParentContext());
+                } else if (contextsByModuleName.containsKey(checkImport.getName())) {
+                    importedContexts = contextsByModuleName.get(checkImport.getName());
+                } else {
+                    throw new MenterExecutionException("Could not resolve the order of the global contexts: no context exports the module [" + checkImport.getName() + "] imported by " + globalContext.getSource());
                 }
-                if (allImportsLoaded) {
-                    orderedGlobalContexts.add(globalContext);
-                    globalContextsToCheck.remove(globalContext);
+
+                for (GlobalContext importedContext : importedContexts) {
+                    if (unfinished.contains(importedContext)) {
+                        contextDependencies.add(importedContext);
+                    }
                 }
             }
+
+            dependencies.put(globalContext, contextDependencies);
         }
 
-        if (MenterDebugger.logInterpreterEvaluationOrder) {
-            LOG.info("Determined the following evaluation order for the global contexts:");
-            for (GlobalContext globalContext : orderedGlobalContexts) {
-                if (unfinishedGlobalContextRootObjects.containsKey(globalContext)) {
-                    LOG.info(" - " + globalContext.getSource());
+        return dependencies;
+    }
+
+    /**
+     * Sorts the contexts topologically using Kahn's algorithm, so that every context comes after the contexts it
+     * imports. Contexts that do not depend on each other keep their relative order.
+     */
+    private List<GlobalContext> sortContextsByDependencies(List<GlobalContext> unfinishedGlobalContexts, Map<GlobalContext, Set<GlobalContext>> dependencies) {
+        final Map<GlobalContext, Integer> indices = new HashMap<>();
+        for (int i = 0; i < unfinishedGlobalContexts.size(); i++) {
+            indices.put(unfinishedGlobalContexts.get(i), i);
+        }
+
+        final int[] remainingDependencies = new int[unfinishedGlobalContexts.size()];
+        final List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < unfinishedGlobalContexts.size(); i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < unfinishedGlobalContexts.size(); i++) {
+            for (GlobalContext dependency : dependencies.get(unfinishedGlobalContexts.get(i))) {
+                dependents.get(indices.get(dependency)).add(i);
+                remainingDependencies[i]++;
+            }
+        }
+
+        final PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < remainingDependencies.length; i++) {
+            if (remainingDependencies[i] == 0) ready.add(i);
+        }
+
+        final List<GlobalContext> ordered = new ArrayList<>(unfinishedGlobalContexts.size());
+        while (!ready.isEmpty()) {
+            final int current = ready.poll();
+            ordered.add(unfinishedGlobalContexts.get(current));
+            for (int dependent : dependents.get(current)) {
+                if (--remainingDependencies[dependent] == 0) {
+                    ready.add(dependent);
                 }
             }
         }
 
-        // execute the global contexts in the correct order
+        if (ordered.size() < unfinishedGlobalContexts.size()) {
+            final Set<GlobalContext> remaining = new LinkedHashSet<>(unfinishedGlobalContexts);
+            ordered.forEach(remaining::remove);
+            throw new MenterExecutionException("Circular dependency in imports found. Could not resolve the order of the global contexts.\n" +
+                                               findDependencyCycle(remaining, dependencies).stream()
+                                                       .map(context -> String.valueOf(context.getSource()))
+                                                       .collect(Collectors.joining(" -> ")));
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Every context that remains after Kahn's algorithm depends on at least one other remaining context, so following
+     * the dependencies from any of them must eventually reach a context that has already been visited.
+     */
+    private static List<GlobalContext> findDependencyCycle(Set<GlobalContext> remaining, Map<GlobalContext, Set<GlobalContext>> dependencies) {
+        final List<GlobalContext> path = new ArrayList<>();
+        GlobalContext current = remaining.iterator().next();
+        while (!path.contains(current)) {
+            path.add(current);
+            current = dependencies.get(current).stream().filter(remaining::contains).findFirst().orElseThrow(IllegalStateException::new);
+        }
+
+        final List<GlobalContext> cycle = new ArrayList<>(path.subList(path.indexOf(current), path.size()));
+        cycle.add(current);
+        return cycle;
+    }
+
+    /**
+     * Removes the context from the unfinished contexts and defers its evaluation if lazy module initialization is
+     * enabled for it.
+     *
+     * @return the root node that still has to be evaluated or <code>null</code> if the evaluation has been deferred or
+     * the context has already been evaluated while resolving its imports.
+     */
+    private ParserNode prepareContextEvaluation(GlobalContext globalContext) {
+        globalContext.resolveImports(this, globalContexts);
+        final ParserNode rootNode = unfinishedGlobalContextRootObjects.remove(globalContext);
+        if (rootNode == null) {
+            return null;
+        } else if (lazyModuleInitialization && !globalContext.getModules().isEmpty()) {
+            globalContext.deferEvaluation(rootNode);
+            return null;
+        }
+        return rootNode;
+    }
+
+    private void evaluateContextsConcurrently(List<GlobalContext> orderedGlobalContexts, Map<GlobalContext, Set<GlobalContext>> dependencies) {
+        final Map<GlobalContext, Integer> remainingDependencies = new HashMap<>();
+        final Map<GlobalContext, List<GlobalContext>> dependents = new HashMap<>();
         for (GlobalContext globalContext : orderedGlobalContexts) {
-            if (unfinishedGlobalContextRootObjects.containsKey(globalContext)) {
-                globalContext.resolveImports(this, globalContexts);
-                final ParserNode rootNode = unfinishedGlobalContextRootObjects.get(globalContext);
-                globalContext.evaluate(rootNode);
-                unfinishedGlobalContextRootObjects.remove(globalContext);
+            remainingDependencies.put(globalContext, dependencies.get(globalContext).size());
+            for (GlobalContext dependency : dependencies.get(globalContext)) {
+                dependents.computeIfAbsent(dependency, c -> new ArrayList<>()).add(globalContext);
             }
         }
 
-        unfinishedGlobalContextRootObjects.clear();
+        final Deque<GlobalContext> ready = new ArrayDeque<>();
+        for (GlobalContext globalContext : orderedGlobalContexts) {
+            if (remainingDependencies.get(globalContext) == 0) ready.add(globalContext);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(evaluationThreadCount, orderedGlobalContexts.size()));
+        final CompletionService<GlobalContext> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            int running = 0;
+            while (!ready.isEmpty() || running > 0) {
+                final List<GlobalContext> finished = new ArrayList<>();
+
+                while (!ready.isEmpty()) {
+                    final GlobalContext globalContext = ready.poll();
+                    final ParserNode rootNode = prepareContextEvaluation(globalContext);
+                    if (rootNode == null) {
+                        finished.add(globalContext);
+                    } else {
+                        completionService.submit(() -> {
+                            globalContext.evaluate(rootNode);
+                            return globalContext;
+                        });
+                        running++;
+                    }
+                }
+
+                if (finished.isEmpty() && running > 0) {
+                    finished.add(awaitResult(completionService.take()));
+                    running--;
+                }
+
+                for (GlobalContext globalContext : finished) {
+                    for (GlobalContext dependent : dependents.getOrDefault(globalContext, Collections.emptyList())) {
+                        if (remainingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+                            ready.add(dependent);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MenterExecutionException("Interrupted while evaluating global contexts", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the task and rethrows the exception it has failed with, if any.
+     */
+    private static <T> T awaitResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new MenterExecutionException("Task failed", e.getCause());
+        }
     }
 
     public Value evaluate(String expression) {
@@ -302,18 +1066,48 @@ public class EvalRuntime {
         final ParserNode tokenTree = parser.parse(tokens);
 
         final GlobalContext context = new GlobalContext("eval");
+        context.setNativeFunctionRegistry(nativeFunctionRegistry);
         context.findImportExportStatements(tokenTree, moduleOptions);
 
-        context.resolveImports(this, globalContexts);
+        synchronized (this) {
+            context.resolveImports(this, globalContexts);
+        }
         return context.evaluate(tokenTree);
     }
 
+    /**
+     * Forks the loaded context with the given source, see {@link GlobalContext#fork()}. Forks are not registered in
+     * the runtime, so a fork can be created for a single request, evaluated using
+     * {@link #evaluateInContext(GlobalContext, String)} and discarded afterwards without affecting the context.
+     *
+     * @throws MenterExecutionException if no context with the source exists or it has not finished loading yet
+     */
+    public synchronized GlobalContext forkContext(String contextSource) {
+        final GlobalContext context = findContext(contextSource);
+        if (context == null) {
+            throw new MenterExecutionException("No context found with source '" + contextSource + "'.");
+        }
+        return forkContext(context);
+    }
+
+    public synchronized GlobalContext forkContext(GlobalContext context) {
+        if (unfinishedGlobalContextRootObjects.containsKey(context)) {
+            throw new MenterExecutionException("Context '" + context.getSource() + "' has not finished loading yet. Call finishLoadingContexts() before forking it.");
+        }
+        context.initialize();
+        context.resolveImports(this, globalContexts);
+        return context.fork();
+    }
+
     public Value evaluateInContextOf(String contextSource, String expression) {
+        final GlobalContext context = findOrCreateContext(contextSource);
+        context.initialize();
+        return evaluateInContext(context, expression);
+    }
+
+    private synchronized GlobalContext findOrCreateContext(String contextSource) {
         // attempt to find a context with the given source
-        GlobalContext context = globalContexts.stream()
-                .filter(globalContext -> globalContext.getSource().equals(contextSource))
-                .findFirst()
-                .orElse(null);
+        GlobalContext context = findContext(contextSource);
 
         // if no context was found, create a new one
         if (context == null) {
@@ -326,16 +1120,35 @@ public class EvalRuntime {
             }
 
             context = new GlobalContext(contextSource);
+            context.setNativeFunctionRegistry(nativeFunctionRegistry);
             context.findImportExportStatements(tokenTree, moduleOptions);
 
-            globalContexts.add(context);
+            addContext(context);
         }
 
+        return context;
+    }
+
+    /**
+     * Evaluates the expression in the context, which can also be a fork of a context. Modules exported by the
+     * expression are only made available to other contexts if the context is not a fork.<br>
+     * The lock of this runtime is only held while the modules and imports are resolved, the expression itself is
+     * evaluated without it, so that evaluations in different contexts or forks do not block each other.
+     */
+    public Value evaluateInContext(GlobalContext context, String expression) {
         final List<Token> tokens = lexer.parse(expression);
         final ParserNode tokenTree = parser.parse(tokens);
 
-        context.findImportExportStatements(tokenTree, moduleOptions);
-        context.resolveImports(this, globalContexts);
+        synchronized (this) {
+            try {
+                context.findImportExportStatements(tokenTree, moduleOptions);
+            } finally {
+                if (!context.isFork()) {
+                    indexModules(context);
+                }
+            }
+            context.resolveImports(this, globalContexts);
+        }
 
         if (tokenTree.getChildren().size() > 0) {
             return context.evaluate(tokenTree);
@@ -344,13 +1157,24 @@ public class EvalRuntime {
         }
     }
 
-    public void deleteContext(String context) {
-        globalContexts.stream()
-                .filter(c -> c.getSource().equals(context))
-                .findFirst().ifPresent(globalContexts::remove);
+    public synchronized void deleteContext(String context) {
+        final GlobalContext globalContext = findContext(context);
+        if (globalContext != null) {
+            removeContext(globalContext);
+            contextTrees.remove(globalContext);
+            fileContexts.values().remove(globalContext);
+        }
         LOG.info("Removed context [{}], now at [{}] contexts", context, globalContexts.size());
     }
 
+    /**
+     * @return the native functions that are only available to this runtime, in addition to the ones of the
+     * {@link NativeFunctionRegistry#getGlobal() global registry}.
+     */
+    public NativeFunctionRegistry getNativeFunctionRegistry() {
+        return nativeFunctionRegistry;
+    }
+
     public ModuleOptions getModuleOptions() {
         return moduleOptions;
     }
@@ -3,15 +3,18 @@ package de.yanwittmann.menter.interpreter;
 import de.yanwittmann.menter.EvalRuntime;
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
+import de.yanwittmann.menter.io.ModuleArchive;
+import de.yanwittmann.menter.io.SourceReader;
 import de.yanwittmann.menter.operator.Operators;
-import org.apache.commons.io.IOUtils;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
+import de.yanwittmann.menter.parser.ParserNode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MenterInterpreter extends EvalRuntime {
 
@@ -23,7 +26,17 @@ public class MenterInterpreter extends EvalRuntime {
     }
 
     public MenterInterpreter(Operators operators) {
+        this(operators, null);
+    }
+
+    /**
+     * @param syntaxTreeCacheDirectory the directory to cache parsed syntax trees and the module index in, or
+     *                                 <code>null</code> to always parse the sources and read the module path
+     */
+    public MenterInterpreter(Operators operators, File syntaxTreeCacheDirectory) {
         super(operators);
+        setSyntaxTreeCache(syntaxTreeCacheDirectory);
+        setModuleIndex(syntaxTreeCacheDirectory == null ? null : new File(syntaxTreeCacheDirectory, "modules.index"));
         loadMenterCoreFiles();
     }
 
@@ -36,10 +49,17 @@ public class MenterInterpreter extends EvalRuntime {
             "cmdplot.mtr",
     };
 
+    /**
+     * The parsed syntax trees of the core files, serialized once per operator configuration and auto imports, so that
+     * new interpreters only have to read the trees instead of lexing and parsing the core files again.
+     */
+    private final static Map<String, List<byte[]>> CORE_FILE_SNAPSHOTS = new ConcurrentHashMap<>();
+
     private void loadMenterCoreFiles() {
         try {
-            for (String file : MENTER_SOURCE_FILES) {
-                loadContext(readLinesFromResource("/src/" + file), file);
+            final List<ParserNode> rootNodes = restoreMenterCoreFiles();
+            for (int i = 0; i < MENTER_SOURCE_FILES.length; i++) {
+                registerContext(rootNodes.get(i), MENTER_SOURCE_FILES[i]);
             }
             finishLoadingContexts();
         } catch (Exception e) {
@@ -47,10 +67,37 @@ public class MenterInterpreter extends EvalRuntime {
         }
     }
 
-    private List<String> readLinesFromResource(String path) {
-        try (InputStream inputStream = getClass().getResourceAsStream(path)) {
-            final String parsed = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
-            return Arrays.stream(parsed.split("\n")).collect(Collectors.toList());
+    private List<ParserNode> restoreMenterCoreFiles() throws IOException {
+        final Operators operators = lexer.getOperators();
+        final String snapshotKey = getModuleOptions().getAutoImportsAsString() + "\n" + operators.getFingerprint();
+        final List<ParserNode> rootNodes = new ArrayList<>(MENTER_SOURCE_FILES.length);
+
+        final List<byte[]> snapshot = CORE_FILE_SNAPSHOTS.get(snapshotKey);
+        if (snapshot != null) {
+            for (byte[] tree : snapshot) {
+                rootNodes.add(CompactSyntaxTree.read(new DataInputStream(new ByteArrayInputStream(tree)), operators).toParserNode());
+            }
+            return rootNodes;
+        }
+
+        final List<byte[]> createdSnapshot = new ArrayList<>(MENTER_SOURCE_FILES.length);
+        for (String file : MENTER_SOURCE_FILES) {
+            final ParserNode rootNode = parseSource(readResource("/src/" + file));
+            rootNodes.add(rootNode);
+
+            // the tree has to be serialized before registering it, since that removes the import and export statements
+            final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+            CompactSyntaxTree.of(rootNode).write(new DataOutputStream(tree), operators);
+            createdSnapshot.add(tree.toByteArray());
+        }
+        CORE_FILE_SNAPSHOTS.putIfAbsent(snapshotKey, createdSnapshot);
+
+        return rootNodes;
+    }
+
+    private CharSequence readResource(String path) {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(path), StandardCharsets.UTF_8)) {
+            return SourceReader.read(reader);
         } catch (Exception e) {
             throw new MenterExecutionException("Failed to read resource " + path, e);
         }
@@ -101,6 +148,9 @@ public class MenterInterpreter extends EvalRuntime {
                     {"-repl", "--repl", "repl"},
                     {"-gs", "--guide-server", "guide-server"},
                     {"-mp", "--module-path"},
+                    {"-cd", "--cache-dir"},
+                    {"-c", "--compile", "compile"},
+                    {"-o", "--output"},
             }));
 
         } catch (MenterExecutionException e) {
@@ -118,7 +168,13 @@ public class MenterInterpreter extends EvalRuntime {
             }
         }
 
-        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        // parsed syntax trees and the module index are cached if a directory is given or MENTER_CACHE is set
+        final String menterCache = System.getenv("MENTER_CACHE");
+        final File syntaxTreeCacheDirectory = commandLineArguments.containsKey("-cd") && !commandLineArguments.get("-cd").isEmpty()
+                ? new File(commandLineArguments.get("-cd").get(0))
+                : menterCache != null ? new File(menterCache) : null;
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators(), syntaxTreeCacheDirectory);
 
         final boolean isRepl = commandLineArguments.containsKey("-repl");
         final boolean isVerboseError = commandLineArguments.containsKey("-V");
@@ -148,19 +204,23 @@ public class MenterInterpreter extends EvalRuntime {
         if (menterHome != null) {
             modulePath.add(new File(menterHome));
         }
+        interpreter.addModulePaths(modulePath);
         if (hasModulePath) {
             for (String path : commandLineArguments.get("-mp")) {
-                modulePath.add(new File(path));
+                interpreter.addModulePath(path);
             }
         }
-        interpreter.addModulePaths(modulePath);
 
-        final boolean isHelp = commandLineArguments.containsKey("-h") || (!isRepl && !hasFiles && !isGuideServer);
+        final boolean isCompile = commandLineArguments.containsKey("-c");
+        final boolean isHelp = commandLineArguments.containsKey("-h") || (!isRepl && !hasFiles && !isGuideServer && !isCompile);
 
         if (isHelp) {
             MenterDebugger.printer.println("Menter Interpreter");
-            MenterDebugger.printer.println("  [-f, --file] <file> ... - load Menter source files");
-            MenterDebugger.printer.println("  [-mp, --module-path] <file> - add module path from which imports will be resolved");
+            MenterDebugger.printer.println("  [-f, --file] <file> ... - load Menter source files or module archives");
+            MenterDebugger.printer.println("  [-mp, --module-path] <file|jar|classpath:dir> - add module path from which imports will be resolved");
+            MenterDebugger.printer.println("  [-cd, --cache-dir] <dir> - cache parsed sources and the module index in this directory (default: MENTER_CACHE)");
+            MenterDebugger.printer.println("  [-c, --compile, compile] <file> ... - compile Menter source files into a module archive");
+            MenterDebugger.printer.println("  [-o, --output] <file> - the archive to compile into (default: modules" + ModuleArchive.FILE_EXTENSION + ")");
             MenterDebugger.printer.println("  [-e, --eval] <code> - evaluate Menter code");
             MenterDebugger.printer.println("  [-repl, --repl, repl] - start REPL");
             MenterDebugger.printer.println("  [-gs, --guide-server, guide-server] <unsafe, us> <port> - start guide server (unsafe mode, port)");
@@ -171,6 +231,20 @@ public class MenterInterpreter extends EvalRuntime {
             return;
         }
 
+        if (isCompile) {
+            final List<File> sources = new ArrayList<>();
+            for (String file : commandLineArguments.get("-c")) {
+                sources.add(new File(file));
+            }
+            final File output = commandLineArguments.containsKey("-o") && !commandLineArguments.get("-o").isEmpty()
+                    ? new File(commandLineArguments.get("-o").get(0))
+                    : new File("modules" + ModuleArchive.FILE_EXTENSION);
+
+            interpreter.compileArchive(sources, output);
+            MenterDebugger.printer.println("Compiled module archive " + output.getPath());
+            return;
+        }
+
         if (hasFiles) {
             for (File file : files) {
                 interpreter.loadFile(file);
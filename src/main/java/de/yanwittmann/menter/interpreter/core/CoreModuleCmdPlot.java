@@ -2,9 +2,10 @@ package de.yanwittmann.menter.interpreter.core;
 
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
 import de.yanwittmann.menter.interpreter.MenterDebugger;
-import de.yanwittmann.menter.interpreter.structure.EvaluationContext;
 import de.yanwittmann.menter.interpreter.structure.EvaluationContextLocalInformation;
 import de.yanwittmann.menter.interpreter.structure.GlobalContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.PrimitiveValueType;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 import de.yanwittmann.menter.operator.Operators;
@@ -14,11 +15,12 @@ import java.math.RoundingMode;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class CoreModuleCmdPlot {
+public class CoreModuleCmdPlot implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("cmdplot.mtr", "plot", CoreModuleCmdPlot::plot);
-        EvaluationContext.registerNativeFunction("cmdplot.mtr", "table", CoreModuleCmdPlot::table);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("cmdplot.mtr", "plot", CoreModuleCmdPlot::plot);
+        registry.register("cmdplot.mtr", "table", CoreModuleCmdPlot::table);
     }
 
     public static Value plot(GlobalContext context, EvaluationContextLocalInformation localInformation, List<Value> arguments) {
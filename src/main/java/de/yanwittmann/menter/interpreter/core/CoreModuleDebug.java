@@ -1,9 +1,10 @@
 package de.yanwittmann.menter.interpreter.core;
 
 import de.yanwittmann.menter.interpreter.MenterDebugger;
-import de.yanwittmann.menter.interpreter.structure.EvaluationContext;
 import de.yanwittmann.menter.interpreter.structure.EvaluationContextLocalInformation;
 import de.yanwittmann.menter.interpreter.structure.GlobalContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.CustomType;
 import de.yanwittmann.menter.interpreter.structure.value.PrimitiveValueType;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
@@ -13,13 +14,14 @@ import de.yanwittmann.menter.lexer.Token;
 import java.util.ArrayList;
 import java.util.List;
 
-public abstract class CoreModuleDebug {
+public class CoreModuleDebug implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("debug.mtr", "breakFlow", CoreModuleDebug::breakFlow);
-        EvaluationContext.registerNativeFunction("debug.mtr", "switch", CoreModuleDebug::debugSwitch);
-        EvaluationContext.registerNativeFunction("debug.mtr", "stackTraceValues", CoreModuleDebug::stackTraceValues);
-        EvaluationContext.registerNativeFunction("debug.mtr", "explain", CoreModuleDebug::explain);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("debug.mtr", "breakFlow", CoreModuleDebug::breakFlow);
+        registry.register("debug.mtr", "switch", CoreModuleDebug::debugSwitch);
+        registry.register("debug.mtr", "stackTraceValues", CoreModuleDebug::stackTraceValues);
+        registry.register("debug.mtr", "explain", CoreModuleDebug::explain);
     }
 
     /**
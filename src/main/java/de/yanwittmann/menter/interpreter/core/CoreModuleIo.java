@@ -1,7 +1,8 @@
 package de.yanwittmann.menter.interpreter.core;
 
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
-import de.yanwittmann.menter.interpreter.structure.EvaluationContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 import org.apache.commons.io.FileUtils;
 
@@ -10,10 +11,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-public class CoreModuleIo {
+public class CoreModuleIo implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("io.mtr", "read", CoreModuleIo::apply);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("io.mtr", "read", CoreModuleIo::apply);
     }
 
     public static Value apply(List<Value> arguments) {
@@ -1,7 +1,8 @@
 package de.yanwittmann.menter.interpreter.core;
 
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
-import de.yanwittmann.menter.interpreter.structure.EvaluationContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 import de.yanwittmann.menter.operator.Operators;
 
@@ -13,35 +14,36 @@ import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
-public abstract class CoreModuleMath {
+public class CoreModuleMath implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("math.mtr", "range", CoreModuleMath::range);
-        EvaluationContext.registerNativeFunction("math.mtr", "space", CoreModuleMath::space);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("math.mtr", "range", CoreModuleMath::range);
+        registry.register("math.mtr", "space", CoreModuleMath::space);
 
-        EvaluationContext.registerNativeFunction("math.mtr", "sin", CoreModuleMath::sin);
-        EvaluationContext.registerNativeFunction("math.mtr", "cos", CoreModuleMath::cos);
-        EvaluationContext.registerNativeFunction("math.mtr", "tan", CoreModuleMath::tan);
-        EvaluationContext.registerNativeFunction("math.mtr", "asin", CoreModuleMath::asin);
-        EvaluationContext.registerNativeFunction("math.mtr", "acos", CoreModuleMath::acos);
-        EvaluationContext.registerNativeFunction("math.mtr", "atan", CoreModuleMath::atan);
+        registry.register("math.mtr", "sin", CoreModuleMath::sin);
+        registry.register("math.mtr", "cos", CoreModuleMath::cos);
+        registry.register("math.mtr", "tan", CoreModuleMath::tan);
+        registry.register("math.mtr", "asin", CoreModuleMath::asin);
+        registry.register("math.mtr", "acos", CoreModuleMath::acos);
+        registry.register("math.mtr", "atan", CoreModuleMath::atan);
 
-        EvaluationContext.registerNativeFunction("math.mtr", "random", CoreModuleMath::random);
-        EvaluationContext.registerNativeFunction("math.mtr", "round", CoreModuleMath::round);
-        EvaluationContext.registerNativeFunction("math.mtr", "floor", CoreModuleMath::floor);
-        EvaluationContext.registerNativeFunction("math.mtr", "ceil", CoreModuleMath::ceil);
-        EvaluationContext.registerNativeFunction("math.mtr", "abs", CoreModuleMath::abs);
+        registry.register("math.mtr", "random", CoreModuleMath::random);
+        registry.register("math.mtr", "round", CoreModuleMath::round);
+        registry.register("math.mtr", "floor", CoreModuleMath::floor);
+        registry.register("math.mtr", "ceil", CoreModuleMath::ceil);
+        registry.register("math.mtr", "abs", CoreModuleMath::abs);
 
-        EvaluationContext.registerNativeFunction("math.mtr", "sqrt", CoreModuleMath::sqrt);
-        EvaluationContext.registerNativeFunction("math.mtr", "root", CoreModuleMath::root);
-        EvaluationContext.registerNativeFunction("math.mtr", "log", CoreModuleMath::log);
-        EvaluationContext.registerNativeFunction("math.mtr", "ln", CoreModuleMath::ln);
+        registry.register("math.mtr", "sqrt", CoreModuleMath::sqrt);
+        registry.register("math.mtr", "root", CoreModuleMath::root);
+        registry.register("math.mtr", "log", CoreModuleMath::log);
+        registry.register("math.mtr", "ln", CoreModuleMath::ln);
 
-        EvaluationContext.registerNativeFunction("math.mtr", "toNum", CoreModuleMath::toNumber);
-        EvaluationContext.registerNativeFunction("math.mtr", "toNumber", CoreModuleMath::toNumber);
-        EvaluationContext.registerNativeFunction("math.mtr", "toStr", CoreModuleMath::stringVersion);
+        registry.register("math.mtr", "toNum", CoreModuleMath::toNumber);
+        registry.register("math.mtr", "toNumber", CoreModuleMath::toNumber);
+        registry.register("math.mtr", "toStr", CoreModuleMath::stringVersion);
 
-        EvaluationContext.registerNativeFunction("math.mtr", "identity", CoreModuleMath::identity);
+        registry.register("math.mtr", "identity", CoreModuleMath::identity);
     }
 
     private static Value identity(List<Value> arguments) {
@@ -1,7 +1,7 @@
 package de.yanwittmann.menter.interpreter.core;
 
-import de.yanwittmann.menter.interpreter.structure.Module;
 import de.yanwittmann.menter.interpreter.structure.*;
+import de.yanwittmann.menter.interpreter.structure.Module;
 import de.yanwittmann.menter.interpreter.structure.value.CustomType;
 import de.yanwittmann.menter.interpreter.structure.value.PrimitiveValueType;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
@@ -12,24 +12,25 @@ import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public class CoreModuleReflection {
+public class CoreModuleReflection implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("reflect.mtr", "inherit", CoreModuleReflection::inherit);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "access", CoreModuleReflection::access);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("reflect.mtr", "inherit", CoreModuleReflection::inherit);
+        registry.register("reflect.mtr", "access", CoreModuleReflection::access);
 
-        EvaluationContext.registerNativeFunction("reflect.mtr", "setVariable", CoreModuleReflection::setVariable);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getVariable", CoreModuleReflection::getVariable);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "removeVariable", CoreModuleReflection::removeVariable);
+        registry.register("reflect.mtr", "setVariable", CoreModuleReflection::setVariable);
+        registry.register("reflect.mtr", "getVariable", CoreModuleReflection::getVariable);
+        registry.register("reflect.mtr", "removeVariable", CoreModuleReflection::removeVariable);
 
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getContextName", CoreModuleReflection::getContextName);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getImports", CoreModuleReflection::getImports);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getModules", CoreModuleReflection::getModules);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getVariables", CoreModuleReflection::getVariables);
+        registry.register("reflect.mtr", "getContextName", CoreModuleReflection::getContextName);
+        registry.register("reflect.mtr", "getImports", CoreModuleReflection::getImports);
+        registry.register("reflect.mtr", "getModules", CoreModuleReflection::getModules);
+        registry.register("reflect.mtr", "getVariables", CoreModuleReflection::getVariables);
 
-        EvaluationContext.registerNativeFunction("reflect.mtr", "callFunctionByName", CoreModuleReflection::callFunctionByName);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "getStackTrace", CoreModuleReflection::getStackTrace);
-        EvaluationContext.registerNativeFunction("reflect.mtr", "printStackTrace", CoreModuleReflection::printStackTrace);
+        registry.register("reflect.mtr", "callFunctionByName", CoreModuleReflection::callFunctionByName);
+        registry.register("reflect.mtr", "getStackTrace", CoreModuleReflection::getStackTrace);
+        registry.register("reflect.mtr", "printStackTrace", CoreModuleReflection::printStackTrace);
     }
 
     public static Value inherit(List<Value> parameters) {
@@ -73,6 +74,7 @@ public class CoreModuleReflection {
         final Map<String, Value> imports = new LinkedHashMap<>();
         for (Import anImport : context.getImports()) {
             final Map<String, Value> importMap = new LinkedHashMap<>();
+            anImport.getModule().getParentContext().initialize();
             for (Object symbol : anImport.getModule().getSymbols()) {
                 if (symbol instanceof Token) {
                     final Token token = (Token) symbol;
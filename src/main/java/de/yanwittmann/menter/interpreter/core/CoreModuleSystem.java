@@ -1,20 +1,22 @@
 package de.yanwittmann.menter.interpreter.core;
 
 import de.yanwittmann.menter.interpreter.MenterDebugger;
-import de.yanwittmann.menter.interpreter.structure.EvaluationContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class CoreModuleSystem {
+public class CoreModuleSystem implements NativeFunctionProvider {
 
-    static {
-        EvaluationContext.registerNativeFunction("system.mtr", "print", CoreModuleSystem::print);
-        EvaluationContext.registerNativeFunction("system.mtr", "range", CoreModuleSystem::getProperty);
-        EvaluationContext.registerNativeFunction("system.mtr", "getProperty", CoreModuleSystem::getProperty);
-        EvaluationContext.registerNativeFunction("system.mtr", "getEnv", CoreModuleSystem::getEnv);
-        EvaluationContext.registerNativeFunction("system.mtr", "sleep", CoreModuleSystem::sleep);
+    @Override
+    public void register(NativeFunctionRegistry registry) {
+        registry.register("system.mtr", "print", CoreModuleSystem::print);
+        registry.register("system.mtr", "range", CoreModuleSystem::getProperty);
+        registry.register("system.mtr", "getProperty", CoreModuleSystem::getProperty);
+        registry.register("system.mtr", "getEnv", CoreModuleSystem::getEnv);
+        registry.register("system.mtr", "sleep", CoreModuleSystem::sleep);
     }
 
     public static Value getProperty(List<Value> arguments) {
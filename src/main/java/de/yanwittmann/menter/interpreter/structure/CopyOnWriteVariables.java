@@ -0,0 +1,154 @@
+package de.yanwittmann.menter.interpreter.structure;
+
+import de.yanwittmann.menter.interpreter.structure.value.Value;
+
+import java.util.*;
+
+/**
+ * The variables of a context created by {@link GlobalContext#fork()}, or a local symbol layer of a closure that has
+ * been copied into a fork.<br>
+ * Variables are read from the parent map until they are first accessed, at which point a copy of the parent value is
+ * stored in this map (see {@link GlobalContext#copyForkedVariable(Value)}). Since assignments modify values in place,
+ * the parent value itself is never handed out, so that writes to the fork are not visible in the parent. Variables
+ * that are added or removed only change this map. Iterating over the variables copies only the values that are read,
+ * so the parent map is never copied as a whole.<br>
+ * The parent variables are only read, so a context can be forked and the forks be used on multiple threads as long as
+ * the parent context itself is not modified.
+ */
+class CopyOnWriteVariables extends AbstractMap<String, Value> {
+
+    private final Map<String, Value> own = new HashMap<>();
+    private final Set<String> removed = new HashSet<>();
+    private Map<String, Value> parent;
+    private GlobalContext owner;
+
+    CopyOnWriteVariables(Map<String, Value> parent) {
+        this.parent = parent;
+    }
+
+    CopyOnWriteVariables(Map<String, Value> parent, GlobalContext owner) {
+        this.parent = parent;
+        this.owner = owner;
+    }
+
+    void setOwner(GlobalContext owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public Value get(Object key) {
+        if (parent == null || own.containsKey(key)) return own.get(key);
+        if (removed.contains(key)) return null;
+
+        final Value original = peek(parent, key);
+        if (original == null) return null;
+        final Value copy = owner.copyForkedVariable(original);
+        own.put((String) key, copy);
+        return copy;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return own.containsKey(key) || (parent != null && !removed.contains(key) && parent.containsKey(key));
+    }
+
+    @Override
+    public Value put(String key, Value value) {
+        final Value previous = get(key);
+        own.put(key, value);
+        removed.remove(key);
+        return previous;
+    }
+
+    @Override
+    public Value remove(Object key) {
+        final Value previous = get(key);
+        own.remove(key);
+        if (parent != null) {
+            removed.add((String) key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        own.clear();
+        removed.clear();
+        parent = null;
+    }
+
+    @Override
+    public int size() {
+        return parent == null ? own.size() : peekKeys().size();
+    }
+
+    @Override
+    public Set<Entry<String, Value>> entrySet() {
+        if (parent == null) return own.entrySet();
+
+        return new AbstractSet<Entry<String, Value>>() {
+            @Override
+            public Iterator<Entry<String, Value>> iterator() {
+                final Iterator<String> keys = peekKeys().iterator();
+                return new Iterator<Entry<String, Value>>() {
+                    private String current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Value> next() {
+                        current = keys.next();
+                        return new SimpleEntry<String, Value>(current, get(current)) {
+                            @Override
+                            public Value setValue(Value value) {
+                                put(getKey(), value);
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (current == null) throw new IllegalStateException();
+                        CopyOnWriteVariables.this.remove(current);
+                        current = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteVariables.this.size();
+            }
+        };
+    }
+
+    // parents that are forks themselves are read without copying their variables, since they may be shared
+
+    private Value peek(Object key) {
+        if (own.containsKey(key)) return own.get(key);
+        if (parent == null || removed.contains(key)) return null;
+        return peek(parent, key);
+    }
+
+    private Set<String> peekKeys() {
+        final Set<String> keys = new LinkedHashSet<>(own.keySet());
+        if (parent != null) {
+            for (String key : peekKeys(parent)) {
+                if (!removed.contains(key)) keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static Value peek(Map<String, Value> variables, Object key) {
+        return variables instanceof CopyOnWriteVariables ? ((CopyOnWriteVariables) variables).peek(key) : variables.get(key);
+    }
+
+    private static Set<String> peekKeys(Map<String, Value> variables) {
+        return variables instanceof CopyOnWriteVariables ? ((CopyOnWriteVariables) variables).peekKeys() : variables.keySet();
+    }
+}
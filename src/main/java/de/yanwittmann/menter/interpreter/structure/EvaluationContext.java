@@ -5,6 +5,7 @@ import de.yanwittmann.menter.interpreter.MenterDebugger;
 import de.yanwittmann.menter.interpreter.structure.value.CustomType;
 import de.yanwittmann.menter.interpreter.structure.value.NativeFunction;
 import de.yanwittmann.menter.interpreter.structure.value.PrimitiveValueType;
+import de.yanwittmann.menter.interpreter.structure.value.PrototypedMap;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 import de.yanwittmann.menter.lexer.Lexer.TokenType;
 import de.yanwittmann.menter.lexer.Token;
@@ -29,20 +30,6 @@ public abstract class EvaluationContext {
     private static final Logger LOG = LogManager.getLogger(EvaluationContext.class);
 
     private final Map<String, Value> variables;
-    protected final static Map<String[], NativeFunction> nativeFunctions = new HashMap<>();
-
-    static {
-        try {
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleIo");
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleSystem");
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleDebug");
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleMath");
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleReflection");
-            Class.forName("de.yanwittmann.menter.interpreter.core.CoreModuleCmdPlot");
-        } catch (ClassNotFoundException e) {
-            LOG.error("Failed to load core module", e);
-        }
-    }
 
     public EvaluationContext() {
         this(new HashMap<>());
@@ -52,12 +39,16 @@ public abstract class EvaluationContext {
         this.variables = variables;
     }
 
+    /**
+     * Registers the function in the {@link NativeFunctionRegistry#getGlobal() global registry}, which is used by all
+     * runtimes.
+     */
     public static void registerNativeFunction(String context, String module, NativeFunction function) {
-        nativeFunctions.put(new String[]{context, module}, function);
+        NativeFunctionRegistry.getGlobal().register(context, module, function);
     }
 
     public static void registerNativeFunction(String context, String module, Function<List<Value>, Value> function) {
-        nativeFunctions.put(new String[]{context, module}, (evaluationContext, localInformation, values) -> function.apply(values));
+        NativeFunctionRegistry.getGlobal().register(context, module, function);
     }
 
 
@@ -215,9 +206,11 @@ public abstract class EvaluationContext {
                                 throw localInformation.createException("Invalid $extends value, expected an object: " + extendsObject.getType());
                             }
 
-                            for (Map.Entry<Object, Value> extendsEntry : extendsObject.getMap().entrySet()) {
-                                result.create(new Value(extendsEntry.getKey()), extendsEntry.getValue(), true);
+                            // link the parent instance instead of copying its members, lookups that miss fall back to it
+                            if (!(result.getMap() instanceof PrototypedMap)) {
+                                result.setValue(new PrototypedMap(result.getMap()));
                             }
+                            ((PrototypedMap) result.getMap()).addPrototype(extendsObject);
                         }
 
                     } else if ("$fields".equals(key)) {
@@ -413,42 +406,32 @@ public abstract class EvaluationContext {
                     thisGlobalContext.getModules().forEach(module -> moduleNameCandidates.add(module.getName()));
                     moduleNameCandidates.add(globalContext.getSourceName());
 
-                    boolean foundNativeFunction = false;
+                    final NativeFunctionRegistry nativeFunctionRegistry = thisGlobalContext.getNativeFunctionRegistry();
+                    NativeFunction nativeFunction = null;
                     for (String moduleNameCandidate : moduleNameCandidates) {
-                        for (Map.Entry<String[], NativeFunction> nativeFunction : nativeFunctions.entrySet()) {
-                            final String[] functionQualifier = nativeFunction.getKey();
-                            final NativeFunction nativeFunctionValue = nativeFunction.getValue();
-
-                            if (functionQualifier.length != 2) {
-                                throw localInformation.createException("Invalid native function qualifier: " + Arrays.toString(functionQualifier) + ". Expected format: [module name, function name]");
-                            }
-
-                            if (functionQualifier[0].equals(moduleNameCandidate) && functionQualifier[1].equals(functionName)) {
-                                functionValue.setValue(nativeFunctionValue);
-                                result = functionValue;
-                                foundNativeFunction = true;
-                                break;
-                            }
-                        }
-                        if (foundNativeFunction) {
+                        nativeFunction = nativeFunctionRegistry.find(moduleNameCandidate, functionName);
+                        if (nativeFunction != null) {
                             break;
                         }
                     }
 
-                    if (!foundNativeFunction) {
-                        throw localInformation.createException("Native function [" + functionName + "] not found using candidates: " + moduleNameCandidates + "\nDefine custom functions using EvaluationContext.registerNativeFunction().");
+                    if (nativeFunction == null) {
+                        throw localInformation.createException("Native function [" + functionName + "] not found using candidates: " + moduleNameCandidates + "\nDefine custom functions using EvaluationContext.registerNativeFunction() or a NativeFunctionProvider.");
                     }
 
+                    functionValue.setValue(nativeFunction);
+                    result = functionValue;
+
                 } else {
                     final Value functionValue = evaluate(node.getChildren().get(0), globalContext, SymbolCreationMode.CREATE_IF_NOT_EXISTS, localInformation);
                     final List<Object> functionArguments = Parser.isType(node.getChildren().get(1), ParserNode.NodeType.PARENTHESIS_PAIR) ? ((ParserNode) node.getChildren().get(1)).getChildren() : null;
                     if (functionArguments == null) {
                         throw localInformation.createException("Function arguments are not a parenthesis pair");
                     }
-                    if (!(node.getChildren().get(2) instanceof ParserNode)) {
-                        node.getChildren().set(2, new ParserNode(ParserNode.NodeType.CODE_BLOCK, null, Collections.singletonList(node.getChildren().get(2))));
-                    }
-                    final ParserNode functionCode = (ParserNode) node.getChildren().get(2);
+                    final Object functionBody = node.getChildren().get(2);
+                    final ParserNode functionCode = functionBody instanceof ParserNode
+                            ? (ParserNode) functionBody
+                            : new ParserNode(ParserNode.NodeType.CODE_BLOCK, null, Collections.singletonList(functionBody));
 
                     final MenterNodeFunction function = new MenterNodeFunction(globalContext, functionArguments, functionCode);
                     functionValue.setValue(function);
@@ -466,7 +449,7 @@ public abstract class EvaluationContext {
                 }
 
                 final ParserNode functionCode = (ParserNode) node.getChildren().get(1);
-                final MenterNodeFunction function = new MenterNodeFunction(globalContext, functionArguments, functionCode);
+                final MenterNodeFunction function = globalContext.getInlineFunction(node, functionArguments, functionCode);
                 result = new Value(function);
                 result.setTagParentFunctionClosureLocalInformation(localInformation);
                 result.setTagParentFunctionClosureContext(globalContext);
@@ -644,15 +627,6 @@ public abstract class EvaluationContext {
         final Value iteratorValue = evaluate(originNode.getChildren().get(1), globalContext, symbolCreationMode, localInformation);
         final Object loopCode = originNode.getChildren().get(2);
 
-        final Value iteratorGetter = iteratorValue.access(new Value("iterator"));
-        final Value iterator = evaluateFunction(iteratorGetter, Collections.singletonList(iteratorValue), globalContext, localInformation, "iterator");
-
-        if (!iterator.getType().equals(PrimitiveValueType.ITERATOR.getType())) {
-            throw localInformation.createException("Iterator element did not provide iterable: " + iteratorValue);
-        }
-        @SuppressWarnings("unchecked") final Iterator<Value> iteratorIterator = (Iterator<Value>) iterator.getValue();
-
-
         // might be a list of values or a single value
         final List<String> variableNames = new ArrayList<>();
 
@@ -674,6 +648,19 @@ public abstract class EvaluationContext {
             throw localInformation.createException("Iterator variable is not a token or a node");
         }
 
+        if (iteratorValue.getValue() instanceof Map) {
+            return forLoopEntries(iteratorValue.getMap().entrySet(), variableNames, loopCode, globalContext, symbolCreationMode, localInformation);
+        } else if (iteratorValue.getValue() instanceof Set) {
+            return forLoopEntries((Set<?>) iteratorValue.getValue(), variableNames, loopCode, globalContext, symbolCreationMode, localInformation);
+        }
+
+        final Value iteratorGetter = iteratorValue.access(new Value("iterator"));
+        final Value iterator = evaluateFunction(iteratorGetter, Collections.singletonList(iteratorValue), globalContext, localInformation, "iterator");
+
+        if (!iterator.getType().equals(PrimitiveValueType.ITERATOR.getType())) {
+            throw localInformation.createException("Iterator element did not provide iterable: " + iteratorValue);
+        }
+        @SuppressWarnings("unchecked") final Iterator<Value> iteratorIterator = (Iterator<Value>) iterator.getValue();
 
         final int requestedParameterCount = variableNames.size();
         Value result = Value.empty();
@@ -704,7 +691,7 @@ public abstract class EvaluationContext {
                     parameterElementIterator.next();
                     final Value variableValue = parameterElementIterator.next();
 
-                    localInformation.putLocalSymbol(variableName, variableValue);
+                    loopLocalInformation.putLocalSymbol(variableName, variableValue);
 
                 } else {
                     throw localInformation.createException("Expected " + requestedParameterCount + " variables, but got " + actualParameterCount + " for iterator element: " + iteratorElement);
@@ -730,7 +717,50 @@ public abstract class EvaluationContext {
         return result;
     }
 
+    /**
+     * Iterates objects, arrays and sets directly over their entries, instead of going through the generic iterator that
+     * wraps every entry into a (key, value) array value. Only the variables that are actually bound are allocated.
+     *
+     * @param entries the map entries of an object or array, or the elements of a set, whose keys are their positions
+     */
+    private Value forLoopEntries(Collection<?> entries, List<String> variableNames, Object loopCode, GlobalContext globalContext, SymbolCreationMode symbolCreationMode, EvaluationContextLocalInformation localInformation) {
+        if (variableNames.size() > 2) {
+            throw localInformation.createException("Expected " + variableNames.size() + " variables, but got 2 for iterating over an object");
+        }
+        final String keyVariableName = variableNames.size() == 2 ? variableNames.get(0) : null;
+        final String valueVariableName = variableNames.get(variableNames.size() - 1);
+
+        Value result = Value.empty();
+
+        int index = 0;
+        for (Object entry : entries) {
+            final EvaluationContextLocalInformation loopLocalInformation = localInformation.deriveNewContext();
+
+            if (keyVariableName != null) {
+                loopLocalInformation.putLocalSymbol(keyVariableName, new Value(entryKey(entry, index)));
+            }
+            // copy the value, so that assigning to the loop variable does not modify the iterated object
+            loopLocalInformation.putLocalSymbol(valueVariableName, new Value(entryValue(entry)));
+            index++;
+
+            result = evaluate(loopCode, globalContext, symbolCreationMode, loopLocalInformation);
+
+            if (result.unwrapBreak()) {
+                break;
+            }
+            result.unwrapContinue();
+        }
+
+        return result;
+    }
+
     public Value forLoop(Value self, Value evaluatorFunction, GlobalContext globalContext, EvaluationContextLocalInformation localInformation) {
+        if (self.getValue() instanceof Map) {
+            return forEachEntries(self.getMap().entrySet(), evaluatorFunction, globalContext, localInformation);
+        } else if (self.getValue() instanceof Set) {
+            return forEachEntries((Set<?>) self.getValue(), evaluatorFunction, globalContext, localInformation);
+        }
+
         final Value iteratorValue = self.access(new Value("iterator"));
         final Value iterator = evaluateFunction(iteratorValue, Collections.singletonList(self), globalContext, localInformation, "iterator");
 
@@ -777,6 +807,46 @@ public abstract class EvaluationContext {
         return result;
     }
 
+    private Value forEachEntries(Collection<?> entries, Value evaluatorFunction, GlobalContext globalContext, EvaluationContextLocalInformation localInformation) {
+        final int functionParameterCount = evaluatorFunction.getValue() instanceof MenterNodeFunction ? ((MenterNodeFunction) evaluatorFunction.getValue()).getArgumentNames().size() : -1;
+
+        Value result = Value.empty();
+
+        int index = 0;
+        for (Object entry : entries) {
+            final EvaluationContextLocalInformation loopLocalInformation = localInformation.deriveNewContext();
+            final Value value = new Value(entryValue(entry));
+
+            if (functionParameterCount == 2) {
+                result = evaluateFunction(evaluatorFunction, Arrays.asList(new Value(entryKey(entry, index)), value), globalContext, loopLocalInformation, "forEach");
+            } else if (functionParameterCount != -1) {
+                result = evaluateFunction(evaluatorFunction, Collections.singletonList(value), globalContext, loopLocalInformation, "forEach");
+            } else {
+                try {
+                    result = evaluateFunction(evaluatorFunction, Collections.singletonList(value), globalContext, loopLocalInformation, "forEach");
+                } catch (Exception e) {
+                    result = evaluateFunction(evaluatorFunction, Arrays.asList(new Value(entryKey(entry, index)), value), globalContext, loopLocalInformation, "forEach");
+                }
+            }
+            index++;
+
+            if (result.unwrapBreak()) {
+                break;
+            }
+            result.unwrapContinue();
+        }
+
+        return result;
+    }
+
+    private static Object entryKey(Object entry, int index) {
+        return entry instanceof Map.Entry ? ((Map.Entry<?, ?>) entry).getKey() : index;
+    }
+
+    private static Object entryValue(Object entry) {
+        return entry instanceof Map.Entry ? ((Map.Entry<?, ?>) entry).getValue() : entry;
+    }
+
     public Value whileLoop(ParserNode originNode, GlobalContext globalContext, SymbolCreationMode symbolCreationMode, EvaluationContextLocalInformation localInformation) {
         final Object conditionNode = originNode.getChildren().get(0);
         final Object loopCode = originNode.getChildren().get(1);
@@ -1101,7 +1171,8 @@ public abstract class EvaluationContext {
 
                         final Module module = anImport.getModule();
                         if (module != null) {
-                            globalContext = module.getParentContext();
+                            globalContext = globalContext.resolveModuleContext(module.getParentContext());
+                            globalContext.initialize();
                             switchedModule = module;
                             localInformation = localInformation.deriveNewContext();
                             localInformation.putLocalSymbol(globalContext.getVariables());
@@ -1121,11 +1192,12 @@ public abstract class EvaluationContext {
 
                         final Module module = anImport.getModule();
                         if (module != null) {
-                            globalContext = module.getParentContext();
+                            globalContext = globalContext.resolveModuleContext(module.getParentContext());
+                            globalContext.initialize();
                             switchedModule = module;
                             localInformation = localInformation.deriveNewContext();
                             localInformation.putLocalSymbol(globalContext.getVariables());
-                            value = module.getParentContext().getVariable(stringKey);
+                            value = globalContext.getVariable(stringKey);
                             foundImport = true;
 
                             if (MenterDebugger.logInterpreterResolveSymbols) {
@@ -5,6 +5,7 @@ import de.yanwittmann.menter.interpreter.MenterDebugger;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public class EvaluationContextLocalInformation {
 
@@ -41,7 +42,12 @@ public class EvaluationContextLocalInformation {
     }
 
     public void putLocalSymbol(Map<String, Value> localSymbols) {
-        localSymbols.forEach(this::putLocalSymbol);
+        if (localSymbols instanceof CopyOnWriteVariables) {
+            // the variables of forks are not iterated, since that would copy all of them
+            localSymbolHierarchy.add(localSymbolHierarchy.size() - 1, new VariablesOverlay(localSymbols));
+        } else {
+            localSymbols.forEach(this::putLocalSymbol);
+        }
     }
 
     public void putLocalSymbol(EvaluationContextLocalInformation context) {
@@ -137,6 +143,25 @@ public class EvaluationContextLocalInformation {
         return info;
     }
 
+    /**
+     * @return a copy of this information in which every symbol map is replaced by the result of the given function, or
+     * this information if the function does not replace any map.
+     */
+    EvaluationContextLocalInformation mapSymbols(UnaryOperator<Map<String, Value>> mapper) {
+        final List<Map<String, Value>> symbols = new ArrayList<>(localSymbolHierarchy.size());
+        boolean changed = false;
+        for (Map<String, Value> localSymbols : localSymbolHierarchy) {
+            final Map<String, Value> mapped = mapper.apply(localSymbols);
+            changed |= mapped != localSymbols;
+            symbols.add(mapped);
+        }
+        if (!changed) return this;
+
+        final EvaluationContextLocalInformation info = new EvaluationContextLocalInformation(new ArrayList<>(symbols.subList(0, symbols.size() - 1)), symbols.get(symbols.size() - 1), stackTrace);
+        info.nextFunctionName = nextFunctionName;
+        return info;
+    }
+
     public EvaluationContextLocalInformation deriveNewFunctionContext() {
         final EvaluationContextLocalInformation info = new EvaluationContextLocalInformation(new HashMap<>(), stackTrace);
         info.nextFunctionName = nextFunctionName;
@@ -3,17 +3,17 @@ package de.yanwittmann.menter.interpreter.structure;
 import de.yanwittmann.menter.EvalRuntime;
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
 import de.yanwittmann.menter.interpreter.ModuleOptions;
+import de.yanwittmann.menter.interpreter.structure.value.PrototypedMap;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
 import de.yanwittmann.menter.lexer.Token;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
 import de.yanwittmann.menter.parser.ParserNode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class GlobalContext extends EvaluationContext {
@@ -23,9 +23,215 @@ public class GlobalContext extends EvaluationContext {
     private final Object source;
     private final List<Module> modules = new ArrayList<>();
     private final List<Import> imports = new ArrayList<>();
+    private NativeFunctionRegistry nativeFunctionRegistry;
+    private final GlobalContext forkParent;
+    private final Map<Value, Value> forkedValues = new IdentityHashMap<>();
+    private final Map<Object, Object> forkedContainers = new IdentityHashMap<>();
+    private final Map<Map<String, Value>, Map<String, Value>> forkedSymbols = new IdentityHashMap<>();
+    private final Map<ParserNode, MenterNodeFunction> inlineFunctions = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<GlobalContext, GlobalContext> forkedModuleContexts;
+    private final GlobalContext moduleForkParent;
 
     public GlobalContext(Object source) {
         this.source = source;
+        this.forkParent = null;
+        this.forkedModuleContexts = null;
+        this.moduleForkParent = null;
+    }
+
+    private GlobalContext(GlobalContext forkParent, CopyOnWriteVariables variables, Map<GlobalContext, GlobalContext> forkedModuleContexts, GlobalContext moduleForkParent) {
+        super(variables);
+        this.forkedModuleContexts = forkedModuleContexts;
+        this.moduleForkParent = moduleForkParent;
+        this.source = forkParent.source;
+        this.forkParent = forkParent;
+        this.nativeFunctionRegistry = forkParent.nativeFunctionRegistry;
+        this.modules.addAll(forkParent.modules);
+        // the imports are copied, so that reloading a module does not change the modules of existing forks
+        for (Import anImport : forkParent.imports) {
+            this.imports.add(new Import(anImport));
+        }
+        this.inputsResolved = true;
+        variables.setOwner(this);
+    }
+
+    /**
+     * Creates a child of this context with the same imports and modules, whose variables are copy-on-write over the
+     * variables of this context. Forking does not copy any variables; a variable is only copied when the fork first
+     * accesses it, so that assignments in the fork are never visible in this context or other forks. Functions of
+     * this context that are accessed through the fork are evaluated in the fork.<br>
+     * Objects, arrays and sets are copied together with the variable that contains them, including the functions
+     * stored in them and the local symbols of closures, so modifying them in the fork is not visible in this context
+     * either. Values that are referenced from multiple places are only copied once, so they stay shared inside of the
+     * fork.<br>
+     * The contexts of the modules this context imports are forked as well when the fork first accesses them, see
+     * {@link #resolveModuleContext(GlobalContext)}, so that assigning module variables or calling module functions
+     * with side effects is not visible outside of the fork either. Different forks can therefore be evaluated on
+     * different threads, but a single fork and the forks created from it must only be used by one thread at a time.
+     *
+     * @throws MenterExecutionException if the context has not been initialized or its imports have not been resolved
+     */
+    public GlobalContext fork() {
+        if (!isInitialized() || !inputsResolved) {
+            throw new MenterExecutionException("Context '" + source + "' has to be fully initialized before it can be forked.");
+        }
+        return new GlobalContext(this, new CopyOnWriteVariables(getVariables()), new IdentityHashMap<>(), this);
+    }
+
+    /**
+     * @param context the context of an imported module, as referenced by the module
+     * @return the context the symbols of the module are read from and its functions are evaluated in. For a fork,
+     * this is a fork of the module context that is created on first access and shared by the fork and the forks of all
+     * modules it uses, so that the modules see each other's changes. Forks of forks fork the module contexts of their
+     * parent fork.
+     */
+    public GlobalContext resolveModuleContext(GlobalContext context) {
+        if (forkedModuleContexts == null) return context;
+
+        GlobalContext forked = forkedModuleContexts.get(context);
+        if (forked == null) {
+            final GlobalContext parent = moduleForkParent.resolveModuleContext(context);
+            parent.initialize();
+            forked = new GlobalContext(parent, new CopyOnWriteVariables(parent.getVariables()), forkedModuleContexts, moduleForkParent);
+            forkedModuleContexts.put(context, forked);
+        }
+        return forked;
+    }
+
+    private GlobalContext findUnforkedContext() {
+        GlobalContext context = this;
+        while (context.forkParent != null) {
+            context = context.forkParent;
+        }
+        return context;
+    }
+
+    public boolean isFork() {
+        return forkParent != null;
+    }
+
+    /**
+     * @return the context this context has been forked from, or <code>null</code> if it is not a fork.
+     */
+    public GlobalContext getForkParent() {
+        return forkParent;
+    }
+
+    /**
+     * @return whether this context has been forked from the given context, directly or through other forks.
+     */
+    public boolean isForkOf(GlobalContext context) {
+        for (GlobalContext parent = forkParent; parent != null; parent = parent.forkParent) {
+            if (parent == context) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the copy of a value of a parent context that is used by this fork. Every value and container is only
+     * copied once.
+     */
+    Value copyForkedVariable(Value original) {
+        final Value existing = forkedValues.get(original);
+        if (existing != null) return existing;
+
+        final Value copy = Value.empty();
+        forkedValues.put(original, copy);
+        copy.inheritValue(original);
+
+        // containers are modified in place as well, so their elements are copied too
+        if (original.getValue() instanceof Map || original.getValue() instanceof Set) {
+            copy.setValue(copyForkedContainer(original.getValue()));
+        }
+
+        // functions of the parent contexts and of imported modules have to access the variables of the forks instead
+        if (copy.getValue() instanceof MenterNodeFunction) {
+            final MenterNodeFunction function = (MenterNodeFunction) copy.getValue();
+            final GlobalContext functionContext = findForkedContext(function.getParentContext());
+            if (functionContext != null) {
+                copy.setValue(function.withParentContext(functionContext));
+            }
+        }
+        final Value parentValue = copy.getTagParentFunctionValue();
+        if (parentValue != null) {
+            copy.setTaggedAdditionalInformation(Value.TAG_KEY_FUNCTION_PARENT_VALUE, copyForkedVariable(parentValue));
+        }
+        final GlobalContext closureContext = findForkedContext(copy.getTagParentFunctionClosureContext());
+        if (closureContext != null) {
+            copy.setTagParentFunctionClosureContext(closureContext);
+            final EvaluationContextLocalInformation closure = copy.getTagParentFunctionClosureLocalInformation();
+            if (closure != null) {
+                copy.setTagParentFunctionClosureLocalInformation(closure.mapSymbols(closureContext::copyForkedSymbols));
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the context that is used instead of the given context in this fork: this fork for the contexts it has
+     * been forked from, the forked module context for the contexts of modules, or <code>null</code> if the context
+     * is used as it is.
+     */
+    private GlobalContext findForkedContext(GlobalContext context) {
+        if (context == null) return null;
+        if (isForkOf(context)) return this;
+
+        final GlobalContext unforkedContext = context.findUnforkedContext();
+        return unforkedContext.getModules().isEmpty() ? null : resolveModuleContext(unforkedContext);
+    }
+
+    private Object copyForkedContainer(Object container) {
+        final Object existing = forkedContainers.get(container);
+        if (existing != null) return existing;
+
+        if (container instanceof Map) {
+            final Map<Object, Value> map;
+            if (container instanceof PrototypedMap) {
+                map = new PrototypedMap();
+                forkedContainers.put(container, map);
+                for (Value prototype : ((PrototypedMap) container).getPrototypes()) {
+                    ((PrototypedMap) map).addPrototype(copyForkedVariable(prototype));
+                }
+            } else {
+                map = new LinkedHashMap<>();
+                forkedContainers.put(container, map);
+            }
+            final Set<Map.Entry<Object, Value>> entries = container instanceof PrototypedMap ? ((PrototypedMap) container).ownEntrySet() : ((Map<Object, Value>) container).entrySet();
+            for (Map.Entry<Object, Value> entry : entries) {
+                map.put(entry.getKey(), copyForkedVariable(entry.getValue()));
+            }
+            return map;
+        } else {
+            final Set<Value> set = container instanceof TreeSet ? new TreeSet<>(((TreeSet<Value>) container).comparator()) : new LinkedHashSet<>();
+            forkedContainers.put(container, set);
+            for (Value element : (Set<Value>) container) {
+                set.add(copyForkedVariable(element));
+            }
+            return set;
+        }
+    }
+
+    /**
+     * @return the local symbols of a closure of a parent context as used by this fork: the variables of the parent
+     * contexts are replaced by the variables of this fork, all other symbols are copied on access.
+     */
+    private Map<String, Value> copyForkedSymbols(Map<String, Value> symbols) {
+        for (GlobalContext parent = forkParent; parent != null; parent = parent.forkParent) {
+            if (symbols == parent.getVariables()) return getVariables();
+        }
+
+        Map<String, Value> copy = forkedSymbols.get(symbols);
+        if (copy == null) {
+            if (symbols instanceof VariablesOverlay) {
+                final VariablesOverlay overlay = (VariablesOverlay) symbols;
+                copy = new VariablesOverlay(copyForkedSymbols(overlay.getVariables()), new CopyOnWriteVariables(overlay.getOwn(), this));
+            } else {
+                copy = new CopyOnWriteVariables(symbols, this);
+            }
+            forkedSymbols.put(symbols, copy);
+        }
+        return copy;
     }
 
     public void findImportExportStatements(ParserNode root, ModuleOptions moduleOptions) {
@@ -102,6 +308,27 @@ public class GlobalContext extends EvaluationContext {
         return imports;
     }
 
+    /**
+     * Inline functions are evaluated every time their declaration is, for example once per instance for the methods of
+     * an object. Only their closure differs between the evaluations, so the function itself is created only once.<br>
+     * The functions of a module context are created by all contexts that use the module, including forks that are
+     * evaluated concurrently, so the cache is synchronized.
+     */
+    MenterNodeFunction getInlineFunction(ParserNode declaration, List<Object> parameters, ParserNode body) {
+        return inlineFunctions.computeIfAbsent(declaration, node -> new MenterNodeFunction(this, parameters, body));
+    }
+
+    /**
+     * @return the registry native declarations in this context are looked up in, the global registry by default.
+     */
+    public NativeFunctionRegistry getNativeFunctionRegistry() {
+        return nativeFunctionRegistry == null ? NativeFunctionRegistry.getGlobal() : nativeFunctionRegistry;
+    }
+
+    public void setNativeFunctionRegistry(NativeFunctionRegistry nativeFunctionRegistry) {
+        this.nativeFunctionRegistry = nativeFunctionRegistry;
+    }
+
     public Object getSource() {
         return source;
     }
@@ -145,7 +372,12 @@ public class GlobalContext extends EvaluationContext {
                 }
 
                 // otherwise search for a module in the global contexts
-                anImport.findModule(globalContexts, runtime.detectAvailableMenterModules().keySet());
+                final Module module = runtime.findModule(anImport.getName());
+                if (module != null) {
+                    anImport.setReferencingModule(module);
+                } else {
+                    anImport.findModule(globalContexts, runtime.detectAvailableMenterModules().keySet());
+                }
             } catch (Exception e) {
                 imports.remove(anImport);
                 throw e;
@@ -155,6 +387,52 @@ public class GlobalContext extends EvaluationContext {
         runtime.finishLoadingContexts();
     }
 
+    private volatile CompactSyntaxTree deferredTree;
+    private volatile boolean initializing = false;
+
+    /**
+     * Defers the evaluation of the root node until the context is first accessed through one of its modules, see
+     * {@link #initialize()}. Modules that are never accessed may be kept for the whole lifetime of the runtime, so only
+     * a {@link CompactSyntaxTree} of the root node is kept until then.
+     */
+    public void deferEvaluation(ParserNode rootNode) {
+        this.deferredTree = CompactSyntaxTree.of(rootNode);
+    }
+
+    public boolean isInitialized() {
+        return deferredTree == null;
+    }
+
+    /**
+     * Evaluates the deferred root node of this context, if it has not been evaluated yet. Contexts that are evaluated
+     * concurrently wait for each other to finish initializing.
+     *
+     * @throws MenterExecutionException if the context is accessed again while it is being initialized
+     */
+    public void initialize() {
+        if (deferredTree == null && !initializing) return;
+        initializeSynchronized();
+    }
+
+    private synchronized void initializeSynchronized() {
+        if (deferredTree == null && !initializing) return;
+        if (initializing) {
+            throw new MenterExecutionException("Circular dependency found while initializing context '" + source + "' with modules " +
+                                               modules.stream().map(Module::getName).collect(Collectors.toList()) + ".\n" +
+                                               "A module cannot access symbols of a module that depends on it while it is being initialized.");
+        }
+
+        final CompactSyntaxTree tree = deferredTree;
+        initializing = true;
+        try {
+            // the body is only evaluated once, even if it fails
+            deferredTree = null;
+            evaluate(tree.toParserNode());
+        } finally {
+            initializing = false;
+        }
+    }
+
     public Value evaluate(ParserNode node) {
         return super.evaluate(node, this, SymbolCreationMode.THROW_IF_NOT_EXISTS, new EvaluationContextLocalInformation(super.getVariables()));
     }
@@ -43,6 +43,12 @@ public class Import {
         this.inline = inline;
     }
 
+    public Import(Import anImport) {
+        this.nameOrModule = anImport.nameOrModule;
+        this.alias = anImport.alias;
+        this.inline = anImport.inline;
+    }
+
     public String getName() {
         return nameOrModule instanceof String ? (String) nameOrModule : ((Module) nameOrModule).getName();
     }
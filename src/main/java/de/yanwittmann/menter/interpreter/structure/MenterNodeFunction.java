@@ -22,6 +22,19 @@ public class MenterNodeFunction {
         this(parentContext, parameters, null);
     }
 
+    private MenterNodeFunction(GlobalContext parentContext, MenterNodeFunction function) {
+        this.parentContext = parentContext;
+        this.parameters = function.parameters;
+        this.body = function.body;
+    }
+
+    /**
+     * @return the same function, evaluated in the given context instead.
+     */
+    public MenterNodeFunction withParentContext(GlobalContext parentContext) {
+        return new MenterNodeFunction(parentContext, this);
+    }
+
     public List<String> getArgumentNames() {
         return parameters;
     }
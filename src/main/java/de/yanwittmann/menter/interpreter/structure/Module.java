@@ -7,8 +7,11 @@ import de.yanwittmann.menter.lexer.Token;
 import de.yanwittmann.menter.parser.ParserNode;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class Module {
 
@@ -16,6 +19,7 @@ public class Module {
     private final String name;
     private final List<Object> symbols = new ArrayList<>();
     private final long creationTime;
+    private volatile Set<String> symbolKeys;
 
     public Module(GlobalContext parentContext, ParserNode exportStatement) {
         this.parentContext = parentContext;
@@ -35,8 +39,12 @@ public class Module {
         return name;
     }
 
+    /**
+     * @return the exported symbols. Symbols can only be added using {@link #addSymbol(String)}, so that the lookup in
+     * {@link #containsSymbol(String)} is kept up to date.
+     */
     public List<Object> getSymbols() {
-        return symbols;
+        return Collections.unmodifiableList(symbols);
     }
 
     public GlobalContext getParentContext() {
@@ -55,11 +63,25 @@ public class Module {
     };
 
     public boolean containsSymbol(String symbol) {
-        return symbols.stream().map(ID_TO_KEY_MAPPER).anyMatch(s -> s.equals(symbol));
+        final Set<String> keys = symbolKeys;
+        return (keys != null ? keys : buildSymbolKeys()).contains(symbol);
     }
 
-    public void addSymbol(String name) {
+    private synchronized Set<String> buildSymbolKeys() {
+        if (symbolKeys == null) {
+            final Set<String> keys = new HashSet<>();
+            for (Object id : symbols) {
+                keys.add(ID_TO_KEY_MAPPER.apply(id));
+            }
+            symbolKeys = keys;
+        }
+        return symbolKeys;
+    }
+
+    public synchronized void addSymbol(String name) {
         symbols.add(name);
+        // the keys are rebuilt on the next lookup
+        symbolKeys = null;
     }
 
     public long getCreationTime() {
@@ -68,6 +90,7 @@ public class Module {
 
     public List<Class<? extends CustomType>> findCustomTypeDefinitions() {
         final List<Class<? extends CustomType>> customTypes = new ArrayList<>();
+        parentContext.initialize();
 
         for (Map.Entry<String, Value> var : parentContext.getVariables().entrySet()) {
             if (var.getValue().getType().equals(PrimitiveValueType.CUSTOM_TYPE.getType())) {
@@ -80,6 +103,7 @@ public class Module {
     }
 
     public boolean containsCustomTypeDefinitionForType(Class<? extends CustomType> type) {
+        parentContext.initialize();
         for (Map.Entry<String, Value> var : parentContext.getVariables().entrySet()) {
             if (var.getValue().getType().equals(PrimitiveValueType.CUSTOM_TYPE.getType())) {
                 final CustomType customType = (CustomType) var.getValue().getValue();
@@ -0,0 +1,10 @@
+package de.yanwittmann.menter.interpreter.structure;
+
+/**
+ * Registers a set of native functions. Implementations are discovered using the {@link java.util.ServiceLoader} by
+ * listing them in <code>META-INF/services/de.yanwittmann.menter.interpreter.structure.NativeFunctionProvider</code>
+ * and are registered in the global {@link NativeFunctionRegistry} the first time it is used.
+ */
+public interface NativeFunctionProvider {
+    void register(NativeFunctionRegistry registry);
+}
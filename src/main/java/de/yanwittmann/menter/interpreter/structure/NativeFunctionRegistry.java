@@ -0,0 +1,83 @@
+package de.yanwittmann.menter.interpreter.structure;
+
+import de.yanwittmann.menter.interpreter.structure.value.NativeFunction;
+import de.yanwittmann.menter.interpreter.structure.value.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The native functions that <code>native</code> declarations are bound to, indexed by the module or source file name
+ * and the function name.<br>
+ * The global registry contains the functions of all {@link NativeFunctionProvider}s. Every runtime has its own registry
+ * that falls back to the global one, so that functions can also be registered for a single runtime.
+ */
+public class NativeFunctionRegistry {
+
+    private static volatile NativeFunctionRegistry global;
+
+    private final NativeFunctionRegistry parent;
+    private final Map<String, Map<String, NativeFunction>> functions = new ConcurrentHashMap<>();
+
+    public NativeFunctionRegistry() {
+        this(null);
+    }
+
+    /**
+     * @param parent the registry to search if a function has not been registered in this one, or <code>null</code>
+     */
+    public NativeFunctionRegistry(NativeFunctionRegistry parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return the registry shared by all runtimes, which is filled using the {@link NativeFunctionProvider}s that are
+     * found by the {@link ServiceLoader} when it is first requested.
+     */
+    public static NativeFunctionRegistry getGlobal() {
+        NativeFunctionRegistry registry = global;
+        if (registry == null) {
+            synchronized (NativeFunctionRegistry.class) {
+                registry = global;
+                if (registry == null) {
+                    registry = new NativeFunctionRegistry();
+                    for (NativeFunctionProvider provider : ServiceLoader.load(NativeFunctionProvider.class)) {
+                        provider.register(registry);
+                    }
+                    global = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    public void register(String module, String name, NativeFunction function) {
+        functions.computeIfAbsent(module, m -> new ConcurrentHashMap<>()).put(name, function);
+    }
+
+    public void register(String module, String name, Function<List<Value>, Value> function) {
+        register(module, name, (evaluationContext, localInformation, values) -> function.apply(values));
+    }
+
+    public void unregister(String module, String name) {
+        final Map<String, NativeFunction> moduleFunctions = functions.get(module);
+        if (moduleFunctions != null) {
+            moduleFunctions.remove(name);
+        }
+    }
+
+    /**
+     * @return the function registered in this registry or its parent or <code>null</code> if there is none.
+     */
+    public NativeFunction find(String module, String name) {
+        final Map<String, NativeFunction> moduleFunctions = functions.get(module);
+        final NativeFunction function = moduleFunctions == null ? null : moduleFunctions.get(name);
+        if (function == null && parent != null) {
+            return parent.find(module, name);
+        }
+        return function;
+    }
+}
@@ -0,0 +1,59 @@
+package de.yanwittmann.menter.interpreter.structure;
+
+import de.yanwittmann.menter.interpreter.structure.value.Value;
+
+import java.util.*;
+
+/**
+ * A local symbol layer that contains all variables of a fork without copying them.<br>
+ * Calling a function adds the variables of its context to the local symbols of the call. For a fork, this would copy
+ * every variable of the parent context on each call, so this layer is added instead: reads are passed to the
+ * variables, while symbols that are put into this layer, like arguments that have the name of a variable, are only
+ * stored in the layer itself. This is the same behaviour as adding all variables to a new map.
+ */
+class VariablesOverlay extends AbstractMap<String, Value> {
+
+    private final Map<String, Value> variables;
+    private final Map<String, Value> own;
+
+    VariablesOverlay(Map<String, Value> variables) {
+        this(variables, new HashMap<>());
+    }
+
+    VariablesOverlay(Map<String, Value> variables, Map<String, Value> own) {
+        this.variables = variables;
+        this.own = own;
+    }
+
+    Map<String, Value> getVariables() {
+        return variables;
+    }
+
+    Map<String, Value> getOwn() {
+        return own;
+    }
+
+    @Override
+    public Value get(Object key) {
+        return own.containsKey(key) ? own.get(key) : variables.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return own.containsKey(key) || variables.containsKey(key);
+    }
+
+    @Override
+    public Value put(String key, Value value) {
+        final Value previous = get(key);
+        own.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Value>> entrySet() {
+        final Map<String, Value> effective = new HashMap<>(variables);
+        effective.putAll(own);
+        return Collections.unmodifiableMap(effective).entrySet();
+    }
+}
@@ -6,6 +6,7 @@ public enum PrimitiveValueType {
     STRING("string"),
     BOOLEAN("boolean"),
     OBJECT("object"),
+    SET("set"),
     REGEX("regex"), MATCHER("matcher"),
     FUNCTION("function"),
     VALUE_FUNCTION("value_function"),
@@ -0,0 +1,119 @@
+package de.yanwittmann.menter.interpreter.structure.value;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * An object map that only stores its own fields and delegates lookups that miss to a list of prototype objects.<br>
+ * Used by <code>$extends</code>, so that the parent instances are linked instead of having their members copied into
+ * every child instance. Prototypes added later take precedence over earlier ones, and own fields over all prototypes.
+ * <br>
+ * All read operations see the inherited fields as well, in the order in which they would appear if they had been
+ * copied into the map: fields of the prototypes first, then the own fields. This way, displaying, comparing and
+ * iterating over an instance is not affected by how its fields are stored. Fields are always written to the own fields
+ * of the map.
+ */
+public class PrototypedMap extends LinkedHashMap<Object, Value> {
+
+    private final List<Value> prototypes = new ArrayList<>(1);
+
+    public PrototypedMap() {
+    }
+
+    public PrototypedMap(Map<Object, Value> ownFields) {
+        super(ownFields);
+    }
+
+    public void addPrototype(Value prototype) {
+        prototypes.add(prototype);
+    }
+
+    public List<Value> getPrototypes() {
+        return Collections.unmodifiableList(prototypes);
+    }
+
+    /**
+     * @return the fields that are stored in this map, without the inherited ones.
+     */
+    public Set<Map.Entry<Object, Value>> ownEntrySet() {
+        return super.entrySet();
+    }
+
+    @Override
+    public Value get(Object key) {
+        if (super.containsKey(key)) {
+            return super.get(key);
+        }
+        for (int i = prototypes.size() - 1; i >= 0; i--) {
+            final Map<Object, Value> prototype = prototypes.get(i).getMap();
+            if (prototype.containsKey(key)) {
+                return prototype.get(key);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Value getOrDefault(Object key, Value defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (super.containsKey(key)) {
+            return true;
+        }
+        for (Value prototype : prototypes) {
+            if (prototype.getMap().containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return effectiveFields().containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return prototypes.isEmpty() ? super.size() : effectiveFields().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Value>> entrySet() {
+        return prototypes.isEmpty() ? super.entrySet() : Collections.unmodifiableSet(effectiveFields().entrySet());
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return prototypes.isEmpty() ? super.keySet() : Collections.unmodifiableSet(effectiveFields().keySet());
+    }
+
+    @Override
+    public Collection<Value> values() {
+        return prototypes.isEmpty() ? super.values() : Collections.unmodifiableCollection(effectiveFields().values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Value> action) {
+        entrySet().forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+    }
+
+    private Map<Object, Value> effectiveFields() {
+        final Map<Object, Value> fields = new LinkedHashMap<>();
+        for (Value prototype : prototypes) {
+            fields.putAll(prototype.getMap());
+        }
+        for (Map.Entry<Object, Value> entry : ownEntrySet()) {
+            fields.put(entry.getKey(), entry.getValue());
+        }
+        return fields;
+    }
+}
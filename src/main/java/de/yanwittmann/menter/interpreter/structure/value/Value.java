@@ -30,8 +30,11 @@ public class Value implements Comparable<Value> {
     public final static String TAG_KEY_CONTINUE_VALUE = "continueValue";
 
     private final static List<Module> CUSTOM_TYPES = new ArrayList<>();
+    /**
+     * The amount of elements from which on sorting with a native comparator is done using a parallel merge sort.
+     */
+    private final static int PARALLEL_SORT_THRESHOLD = 1 << 13;
 
-    private final int uuidHash = UUID.randomUUID().toString().hashCode();
     private Object value;
     private Map.Entry<String, Value>[] taggedAdditionalInformation = new Map.Entry[0];
 
@@ -197,6 +200,12 @@ public class Value implements Comparable<Value> {
             this.value = map;
         } else if (value instanceof Map && !(value instanceof LinkedHashMap)) {
             this.value = new LinkedHashMap<>((Map<?, ?>) value);
+        } else if (value instanceof Set && !(value instanceof LinkedHashSet) && !(value instanceof TreeSet)) {
+            final Set<Value> set = new LinkedHashSet<>();
+            for (Object o : (Set<?>) value) {
+                set.add(o instanceof Value ? (Value) o : new Value(o));
+            }
+            this.value = set;
         } else if (value instanceof Value) {
             setValue(((Value) value).getValue());
         } else if (value instanceof Map.Entry) {
@@ -235,6 +244,8 @@ public class Value implements Comparable<Value> {
             return PrimitiveValueType.OBJECT.getType();
         } else if (value instanceof HashMap) {
             return PrimitiveValueType.OBJECT.getType();
+        } else if (value instanceof Set) {
+            return PrimitiveValueType.SET.getType();
         } else if (value instanceof MenterNodeFunction) {
             return PrimitiveValueType.FUNCTION.getType();
         } else if (value instanceof MenterValueFunction) {
@@ -287,6 +298,8 @@ public class Value implements Comparable<Value> {
             return !((LinkedHashMap<?, ?>) value).isEmpty();
         } else if (value instanceof HashMap) {
             return !((HashMap<?, ?>) value).isEmpty();
+        } else if (value instanceof Set) {
+            return !((Set<?>) value).isEmpty();
         }
 
         if (value instanceof MenterNodeFunction || value instanceof MenterValueFunction ||
@@ -331,6 +344,23 @@ public class Value implements Comparable<Value> {
         } else if (value instanceof String) {
             return makeIteratorValueIterator(((String) this.getValue()).chars().mapToObj(c -> (char) c).iterator());
 
+        } else if (value instanceof Set) {
+            // elements are paired with their position, the same way array elements are paired with their index
+            final Iterator<Value> setIterator = ((Set<Value>) value).iterator();
+            return new Value(new Iterator<Value>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return setIterator.hasNext();
+                }
+
+                @Override
+                public Value next() {
+                    return new Value(Arrays.asList(new Value(index++), setIterator.next()));
+                }
+            });
+
         } else if (value instanceof CustomType) {
             final Value iterator = ((CustomType) value).iterator();
             if (iterator != null) {
@@ -379,24 +409,7 @@ public class Value implements Comparable<Value> {
             final Object accessValue = identifier.getValue();
             final Map<Object, Value> map = (Map<Object, Value>) value;
 
-            if (accessValue instanceof BigDecimal) {
-                if (map.containsKey(accessValue)) {
-                    return map.get(accessValue);
-                } else {
-                    // check every key using the compareTo method. This is sadly not preventable, as BigDecimal
-                    // sometimes uses the scientific notation to compare values, and not only the plain version.
-                    // or, at least I have not found a different way to do this.
-                    for (Object key : map.keySet()) {
-                        if (key instanceof BigDecimal) {
-                            if (((BigDecimal) key).compareTo((BigDecimal) accessValue) == 0) {
-                                return map.get(key);
-                            }
-                        }
-                    }
-                }
-            } else {
-                return map.get(accessValue);
-            }
+            return getMapValue(map, accessValue);
         }
 
         if (this.getValue() instanceof CustomType) {
@@ -419,7 +432,7 @@ public class Value implements Comparable<Value> {
             if (!isFinalIdentifier) {
                 value.setValue(new LinkedHashMap<>());
             }
-            ((Map<Object, Value>) this.value).put(identifier.getValue(), value);
+            ((Map<Object, Value>) this.value).put(mapKey(identifier.getValue()), value);
             return true;
         }
 
@@ -501,9 +514,9 @@ public class Value implements Comparable<Value> {
                         put("value", ((Value) entry.getValue()));
                     }})).collect(Collectors.toList())));
 
-                    put("containsValue", (context, self, values, localInformation) -> new Value(((Map<?, ?>) self.getValue()).values().stream().anyMatch(value -> value.equals(values.get(0)))));
-                    put("contains", (context, self, values, localInformation) -> new Value(((Map<?, ?>) self.getValue()).values().stream().anyMatch(value -> value.equals(values.get(0)))));
-                    put("containsKey", (context, self, values, localInformation) -> new Value(((Map<?, ?>) self.getValue()).keySet().stream().anyMatch(key -> key.equals(values.get(0).getValue()))));
+                    put("containsValue", (context, self, values, localInformation) -> new Value(self.getMap().containsValue(values.get(0))));
+                    put("contains", (context, self, values, localInformation) -> new Value(self.getMap().containsValue(values.get(0))));
+                    put("containsKey", (context, self, values, localInformation) -> new Value(getMapValue(self.getMap(), values.get(0).getValue()) != null));
 
                     put("push", (context, self, values, localInformation) -> {
                         // either one or two arguments, if only one argument is given, the key is the size of the map
@@ -517,7 +530,7 @@ public class Value implements Comparable<Value> {
                             final BigDecimal max = findHighestNumericKey((Map<Object, Value>) self.getValue());
                             ((Map<Object, Value>) self.getValue()).put(max.add(BigDecimal.ONE), values.get(0));
                         } else {
-                            ((Map<Object, Value>) self.getValue()).put(values.get(0).getValue(), values.get(1));
+                            ((Map<Object, Value>) self.getValue()).put(mapKey(values.get(0).getValue()), values.get(1));
                         }
                         return self;
                     });
@@ -576,7 +589,7 @@ public class Value implements Comparable<Value> {
 
                         final Map<Object, Value> map = new LinkedHashMap<>();
                         for (Entry<Object, Value> entry : (self.getMap()).entrySet()) {
-                            map.put(applyFunction(toList(entry.getKey()), values.get(0), context, localInformation, "mapKeys").getValue(), entry.getValue());
+                            map.put(mapKey(applyFunction(toList(entry.getKey()), values.get(0), context, localInformation, "mapKeys").getValue()), entry.getValue());
                         }
                         return new Value(map);
                     });
@@ -619,18 +632,13 @@ public class Value implements Comparable<Value> {
 
                     put("distinct", (context, self, values, localInformation) -> {
                         if (isMapAnArray((self.getMap()))) {
-                            final List<Value> mapped = new ArrayList<>();
-                            for (Entry<Object, Value> entry : (self.getMap()).entrySet()) {
-                                if (!mapped.contains(entry.getValue())) {
-                                    mapped.add(entry.getValue());
-                                }
-                            }
-                            return new Value(mapped);
+                            return new Value(new ArrayList<>(new LinkedHashSet<>(self.getMap().values())));
 
                         } else {
+                            final Set<Value> seen = new HashSet<>();
                             final Map<Object, Value> map = new LinkedHashMap<>();
                             for (Entry<Object, Value> entry : (self.getMap()).entrySet()) {
-                                if (!map.containsValue(entry.getValue())) {
+                                if (seen.add(entry.getValue())) {
                                     map.put(entry.getKey(), entry.getValue());
                                 }
                             }
@@ -638,10 +646,54 @@ public class Value implements Comparable<Value> {
                         }
                     });
 
+                    put("union", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.OBJECT.getType()}, {PrimitiveValueType.SET.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "union", values, parameterCombinations);
+
+                        final Set<Value> result = new LinkedHashSet<>(self.getMap().values());
+                        result.addAll(getCollectionValues(values.get(0)));
+                        return new Value(new ArrayList<>(result));
+                    });
+                    put("intersect", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.OBJECT.getType()}, {PrimitiveValueType.SET.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "intersect", values, parameterCombinations);
+
+                        final Set<Value> result = new LinkedHashSet<>(self.getMap().values());
+                        result.retainAll(new HashSet<>(getCollectionValues(values.get(0))));
+                        return new Value(new ArrayList<>(result));
+                    });
+                    put("difference", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.OBJECT.getType()}, {PrimitiveValueType.SET.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "difference", values, parameterCombinations);
+
+                        final Set<Value> result = new LinkedHashSet<>(self.getMap().values());
+                        result.removeAll(new HashSet<>(getCollectionValues(values.get(0))));
+                        return new Value(new ArrayList<>(result));
+                    });
+                    put("toSet", (context, self, values, localInformation) -> {
+                        final Set<Value> set = new LinkedHashSet<>();
+                        addSetElements(set, self.getMap().values());
+                        return new Value(set);
+                    });
+                    put("toSortedSet", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.FUNCTION.getType()}, {}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "toSortedSet", values, parameterCombinations);
+
+                        final Set<Value> set = new TreeSet<>(values.isEmpty() ? Value::compareNaturally : extractComparatorFromParameters(context, values, localInformation));
+                        addSetElements(set, self.getMap().values());
+                        return new Value(set);
+                    });
+
                     put("sort", (context, self, values, localInformation) -> {
                         final String[][] parameterCombinations = {{PrimitiveValueType.FUNCTION.getType()}, {}};
                         CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "sort", values, parameterCombinations);
 
+                        if (values.isEmpty() && isMapAnArray((self.getMap()))) {
+                            final Value[] sorted = self.getMap().values().toArray(new Value[0]);
+                            sortNative(sorted, findNativeComparator(Arrays.asList(sorted)));
+                            return new Value(Arrays.asList(sorted));
+                        }
+
                         final Comparator<Value> comparator = extractComparatorFromParameters(context, values, localInformation);
 
                         if (isMapAnArray((self.getMap()))) {
@@ -655,6 +707,36 @@ public class Value implements Comparable<Value> {
                         }
                     });
 
+                    put("sortBy", (context, self, values, localInformation) -> {
+                        // decorate-sort-undecorate: the key function is only called once per element
+                        final String[][] parameterCombinations = {{PrimitiveValueType.FUNCTION.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "sortBy", values, parameterCombinations);
+
+                        final Map<Object, Value> map = self.getMap();
+                        final Map.Entry<Value, Entry<Object, Value>>[] decorated = new Map.Entry[map.size()];
+                        int i = 0;
+                        for (Entry<Object, Value> entry : map.entrySet()) {
+                            decorated[i++] = new AbstractMap.SimpleEntry<>(applyFunction(toList(entry.getValue()), values.get(0), context, localInformation, "sortBy"), entry);
+                        }
+
+                        final Comparator<Value> keyComparator = findNativeComparator(Arrays.stream(decorated).map(Entry::getKey).collect(Collectors.toList()));
+                        sortNative(decorated, (a, b) -> keyComparator.compare(a.getKey(), b.getKey()));
+
+                        if (isMapAnArray(map)) {
+                            final List<Value> sorted = new ArrayList<>(decorated.length);
+                            for (Map.Entry<Value, Entry<Object, Value>> entry : decorated) {
+                                sorted.add(entry.getValue().getValue());
+                            }
+                            return new Value(sorted);
+                        } else {
+                            final Map<Object, Value> sorted = new LinkedHashMap<>();
+                            for (Map.Entry<Value, Entry<Object, Value>> entry : decorated) {
+                                sorted.put(entry.getValue().getKey(), entry.getValue().getValue());
+                            }
+                            return new Value(sorted);
+                        }
+                    });
+
                     put("sortKey", (context, self, values, localInformation) -> {
                         final String[][] parameterCombinations = {{PrimitiveValueType.FUNCTION.getType()}, {}};
                         CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.OBJECT.getType(), "sortKey", values, parameterCombinations);
@@ -765,13 +847,13 @@ public class Value implements Comparable<Value> {
 
                     put("frequency", (context, self, values, localInformation) -> {
                         // count the number of occurrences of each value in the map
-                        final Map<Object, Integer> frequency = new HashMap<>();
+                        final Map<Value, Integer> frequency = new LinkedHashMap<>();
                         for (Value value : (self.getMap()).values()) {
-                            frequency.put(value.getValue(), frequency.getOrDefault(value.getValue(), 0) + 1);
+                            frequency.merge(value, 1, Integer::sum);
                         }
-                        final Map<Value, Value> result = new HashMap<>();
-                        for (Entry<Object, Integer> entry : frequency.entrySet()) {
-                            result.put(new Value(entry.getKey()), new Value(entry.getValue()));
+                        final Map<Object, Value> result = new LinkedHashMap<>();
+                        for (Entry<Value, Integer> entry : frequency.entrySet()) {
+                            result.put(mapKey(entry.getKey().getValue()), new Value(entry.getValue()));
                         }
                         return new Value(result);
                     });
@@ -783,7 +865,7 @@ public class Value implements Comparable<Value> {
 
                         final Map<Object, Value> map = self.getMap();
                         final Object key = values.get(0).getValue();
-                        final Object newKey = values.get(1).getValue();
+                        final Object newKey = mapKey(values.get(1).getValue());
 
                         if (map.containsKey(key)) {
                             final Value value = map.get(key);
@@ -857,6 +939,77 @@ public class Value implements Comparable<Value> {
                     });
                 }
             });
+            put(PrimitiveValueType.SET.getType(), new HashMap<String, MenterValueFunction>() {
+                {
+                    put("size", (context, self, values, localInformation) -> new Value(self.size()));
+                    put("values", (context, self, values, localInformation) -> new Value(new ArrayList<>((Set<Value>) self.getValue())));
+                    put("contains", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.ANY.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.SET.getType(), "contains", values, parameterCombinations);
+
+                        return new Value(((Set<Value>) self.getValue()).contains(values.get(0)));
+                    });
+                    put("isSorted", (context, self, values, localInformation) -> new Value(self.getValue() instanceof TreeSet));
+
+                    put("add", (context, self, values, localInformation) -> {
+                        // modifies the source set, any amount of values can be added at once
+                        addSetElements((Set<Value>) self.getValue(), values);
+                        return self;
+                    });
+                    put("remove", (context, self, values, localInformation) -> {
+                        ((Set<Value>) self.getValue()).removeAll(values);
+                        return self;
+                    });
+
+                    put("union", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.SET.getType()}, {PrimitiveValueType.OBJECT.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.SET.getType(), "union", values, parameterCombinations);
+
+                        final Set<Value> result = copySet((Set<Value>) self.getValue());
+                        addSetElements(result, getCollectionValues(values.get(0)));
+                        return new Value(result);
+                    });
+                    put("intersect", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.SET.getType()}, {PrimitiveValueType.OBJECT.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.SET.getType(), "intersect", values, parameterCombinations);
+
+                        final Collection<Value> other = getCollectionValues(values.get(0));
+                        final Set<Value> result = copySet((Set<Value>) self.getValue());
+                        result.retainAll(other instanceof Set ? other : new HashSet<>(other));
+                        return new Value(result);
+                    });
+                    put("difference", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.SET.getType()}, {PrimitiveValueType.OBJECT.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.SET.getType(), "difference", values, parameterCombinations);
+
+                        final Set<Value> result = copySet((Set<Value>) self.getValue());
+                        for (Value value : getCollectionValues(values.get(0))) {
+                            result.remove(value);
+                        }
+                        return new Value(result);
+                    });
+                    put("isSubsetOf", (context, self, values, localInformation) -> {
+                        final String[][] parameterCombinations = {{PrimitiveValueType.SET.getType()}, {PrimitiveValueType.OBJECT.getType()}};
+                        CustomType.assertAtLeastOneOfParameterCombinationExists(PrimitiveValueType.SET.getType(), "isSubsetOf", values, parameterCombinations);
+
+                        final Collection<Value> other = getCollectionValues(values.get(0));
+                        return new Value((other instanceof Set ? other : new HashSet<>(other)).containsAll((Set<Value>) self.getValue()));
+                    });
+
+                    put("first", (context, self, values, localInformation) -> {
+                        final Set<Value> set = (Set<Value>) self.getValue();
+                        return set.isEmpty() ? Value.empty() : set.iterator().next();
+                    });
+                    put("last", (context, self, values, localInformation) -> {
+                        final Set<Value> set = (Set<Value>) self.getValue();
+                        if (set.isEmpty()) return Value.empty();
+                        if (set instanceof TreeSet) return ((TreeSet<Value>) set).last();
+                        Value last = null;
+                        for (Value value : set) last = value;
+                        return last;
+                    });
+                }
+            });
             put(PrimitiveValueType.STRING.getType(), new HashMap<String, MenterValueFunction>() {
                 {
                     put("size", (context, self, values, localInformation) -> new Value(self.size()));
@@ -1190,6 +1343,94 @@ public class Value implements Comparable<Value> {
         }
     };
 
+    public static Value getMapValue(Map<?, Value> map, Object key) {
+        final Value value = map.get(key);
+        if (value != null || !(key instanceof BigDecimal)) {
+            return value;
+        }
+
+        // check every key using the compareTo method. This is sadly not preventable, as BigDecimal
+        // sometimes uses the scientific notation to compare values, and not only the plain version.
+        // or, at least I have not found a different way to do this.
+        for (Map.Entry<?, Value> entry : map.entrySet()) {
+            if (entry.getKey() instanceof BigDecimal && ((BigDecimal) entry.getKey()).compareTo((BigDecimal) key) == 0) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public static Collection<Value> getCollectionValues(Value value) {
+        if (value.getValue() instanceof Map) {
+            return ((Map<?, Value>) value.getValue()).values();
+        } else if (value.getValue() instanceof Set) {
+            return (Set<Value>) value.getValue();
+        }
+        throw new MenterExecutionException("Cannot transform type " + value.getType() + " to a collection of values");
+    }
+
+    /**
+     * Adds snapshots of the given values to a set. Values are modified in place by assignments, and the hash code and
+     * order of an element must not change while it is stored in a set, so the elements are copied, including the
+     * elements of objects, arrays and sets. Elements of a set that are modified after being taken from the set do not
+     * change the set either, since the set only holds its own copies.
+     */
+    private static void addSetElements(Set<Value> set, Collection<Value> values) {
+        for (Value value : values) {
+            set.add(snapshot(value));
+        }
+    }
+
+    /**
+     * Objects, arrays and sets that are used as keys of an object are copied the same way as the elements of a set:
+     * the key is hashed by its contents, so modifying the original value would otherwise change the hash code of the
+     * key while it is stored in the map and the entry could not be found anymore.
+     */
+    private static Object mapKey(Object key) {
+        return key instanceof Map || key instanceof Set ? snapshot(new Value(key)).getValue() : key;
+    }
+
+    private static Value snapshot(Value value) {
+        if (value.getValue() instanceof Map) {
+            final Map<Object, Value> map = new LinkedHashMap<>();
+            for (Map.Entry<Object, Value> entry : ((Map<Object, Value>) value.getValue()).entrySet()) {
+                map.put(entry.getKey(), snapshot(entry.getValue()));
+            }
+            return new Value(map);
+        } else if (value.getValue() instanceof Set) {
+            final Set<Value> set = value.getValue() instanceof TreeSet ? new TreeSet<>(((TreeSet<Value>) value.getValue()).comparator()) : new LinkedHashSet<>();
+            addSetElements(set, (Set<Value>) value.getValue());
+            return new Value(set);
+        }
+        return new Value(value.getValue());
+    }
+
+    /**
+     * The order of sorted sets that have been created without a comparator. {@link Value#compareTo(Value)} compares
+     * objects, arrays and sets by their size, which would make a sorted set drop all but one of the elements of the
+     * same size, so only numbers, strings, booleans and custom types of the same type can be compared.
+     *
+     * @throws MenterExecutionException if the values have no natural order
+     */
+    private static int compareNaturally(Value a, Value b) {
+        final String type = a.getType();
+        final boolean ordered = type.equals(PrimitiveValueType.NUMBER.getType()) || type.equals(PrimitiveValueType.STRING.getType())
+                                || type.equals(PrimitiveValueType.BOOLEAN.getType()) || type.equals(PrimitiveValueType.CUSTOM_TYPE.getType());
+        if (!ordered || !type.equals(b.getType())) {
+            throw new MenterExecutionException("Cannot order [" + a.getType() + "] and [" + b.getType() + "] in a sorted set without a comparator, pass a comparator function to toSortedSet()");
+        }
+        return a.compareTo(b);
+    }
+
+    private static Set<Value> copySet(Set<Value> set) {
+        if (set instanceof TreeSet) {
+            final Set<Value> copy = new TreeSet<>(((TreeSet<Value>) set).comparator());
+            copy.addAll(set);
+            return copy;
+        }
+        return new LinkedHashSet<>(set);
+    }
+
     public static BigDecimal findHighestNumericKey(Map<Object, Value> map) {
         BigDecimal max = BigDecimal.valueOf(-1);
         for (Object key : map.keySet()) {
@@ -1236,6 +1477,31 @@ public class Value implements Comparable<Value> {
         return aggregator;
     }
 
+    /**
+     * Finds the cheapest comparator that is equivalent to {@link Value#compareTo(Value)} for the given values, by
+     * comparing the raw numbers or strings directly if all values are of the same type.
+     */
+    private static Comparator<Value> findNativeComparator(Collection<Value> values) {
+        if (values.stream().allMatch(v -> v.getValue() instanceof BigDecimal)) {
+            return (a, b) -> ((BigDecimal) a.getValue()).compareTo((BigDecimal) b.getValue());
+        } else if (values.stream().allMatch(v -> v.getValue() instanceof String)) {
+            return (a, b) -> ((String) a.getValue()).compareTo((String) b.getValue());
+        }
+        return Value::compareTo;
+    }
+
+    /**
+     * Stable sort for native comparators only, as interpreted functions may not be called from multiple threads.
+     * Large arrays are sorted with a parallel merge sort on the common fork/join pool.
+     */
+    private static <T> void sortNative(T[] array, Comparator<? super T> comparator) {
+        if (array.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(array, comparator);
+        } else {
+            Arrays.sort(array, comparator);
+        }
+    }
+
     public static Comparator<Value> extractComparatorFromParameters(GlobalContext context, List<Value> values, EvaluationContextLocalInformation localInformation) {
         final Comparator<Value> comparator;
         if (values.size() > 0) {
@@ -1292,7 +1558,7 @@ public class Value implements Comparable<Value> {
     }
 
     public static String toDisplayString(Object object) {
-        return toDisplayStringInternal(object, new HashSet<>());
+        return toDisplayStringInternal(object, Collections.newSetFromMap(new IdentityHashMap<>()));
     }
 
     private static String toDisplayStringInternal(Object object, Set<Object> visited) {
@@ -1300,7 +1566,7 @@ public class Value implements Comparable<Value> {
             return "null";
         } else if (visited.contains(object)) {
             return "<circular-reference-" +
-                   (object instanceof Value ? ((Value) object).getType() : object.getClass().getSimpleName()) + "@" + Objects.hashCode(object)
+                   (object instanceof Value ? ((Value) object).getType() : object.getClass().getSimpleName()) + "@" + System.identityHashCode(object)
                    + ">";
         } else {
             boolean add = true;
@@ -1338,6 +1604,11 @@ public class Value implements Comparable<Value> {
                     return joiner.toString();
                 }
 
+            } else if (object instanceof Set) {
+                return ((Set<?>) object).stream()
+                        .map(v -> toDisplayStringInternal(v, visited))
+                        .collect(Collectors.joining(", ", "{", "}"));
+
             } else if (object instanceof Token) {
                 return ((Token) object).getValue();
             } else if (object instanceof Pattern) {
@@ -1418,13 +1689,33 @@ public class Value implements Comparable<Value> {
             return false;
         }
 
-        if (this.getType().equals(PrimitiveValueType.NUMBER.getType())) {
-            return this.toDisplayString().equals(other.toDisplayString());
-        } else if (this.getType().equals(PrimitiveValueType.BOOLEAN.getType())) {
-            return this.isTrue() == other.isTrue();
+        return structuralEquals(this.getValue(), other.getValue());
+    }
+
+    private static boolean structuralEquals(Object a, Object b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null) {
+            return false;
+        } else if (a instanceof Value && b instanceof Value) {
+            return structuralEquals(((Value) a).getValue(), ((Value) b).getValue());
+        } else if (a instanceof BigDecimal && b instanceof BigDecimal) {
+            return ((BigDecimal) a).compareTo((BigDecimal) b) == 0;
+        } else if (a instanceof Map && b instanceof Map) {
+            final Map<?, Value> mapA = (Map<?, Value>) a;
+            final Map<?, Value> mapB = (Map<?, Value>) b;
+            if (mapA.size() != mapB.size()) {
+                return false;
+            }
+            for (Map.Entry<?, Value> entry : mapA.entrySet()) {
+                if (!structuralEquals(entry.getValue(), getMapValue(mapB, entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
         }
 
-        return this.getValue().equals(other.getValue());
+        return a.equals(b);
     }
 
     @Override
@@ -1440,6 +1731,8 @@ public class Value implements Comparable<Value> {
             return Integer.compare(((Map<?, ?>) this.getValue()).size(), ((Map<?, ?>) o.getValue()).size());
         } else if (type.equals(PrimitiveValueType.OBJECT.getType())) {
             return Integer.compare(((Map<?, ?>) this.getValue()).size(), ((Map<?, ?>) o.getValue()).size());
+        } else if (type.equals(PrimitiveValueType.SET.getType())) {
+            return Integer.compare(((Set<?>) this.getValue()).size(), ((Set<?>) o.getValue()).size());
         } else if (type.equals(PrimitiveValueType.CUSTOM_TYPE.getType())) {
             return ((CustomType) this.getValue()).compareTo(((CustomType) o.getValue()));
         } else {
@@ -1449,6 +1742,30 @@ public class Value implements Comparable<Value> {
 
     @Override
     public int hashCode() {
-        return uuidHash;
+        return structuralHashCode(value, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static int structuralHashCode(Object object, Set<Object> visited) {
+        if (object == null) {
+            return 0;
+        } else if (object instanceof Value) {
+            return structuralHashCode(((Value) object).getValue(), visited);
+        } else if (object instanceof BigDecimal) {
+            // equal numbers can differ in scale, the stripped representation is unique per numeric value
+            return ((BigDecimal) object).stripTrailingZeros().hashCode();
+        } else if (object instanceof Map) {
+            if (!visited.add(object)) {
+                return 0;
+            }
+            // order independent, as objects with the same entries in a different order are equal
+            int hash = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                hash += structuralHashCode(entry.getKey(), visited) ^ structuralHashCode(entry.getValue(), visited);
+            }
+            visited.remove(object);
+            return hash;
+        }
+
+        return object.hashCode();
     }
 }
@@ -0,0 +1,206 @@
+package de.yanwittmann.menter.io;
+
+import de.yanwittmann.menter.operator.Operators;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precompiled set of source files (<code>.mtrc</code>) that can be loaded without lexing and parsing them.<br>
+ * The archive starts with a header that contains the format versions and the operator configuration the sources have
+ * been parsed with, followed by one entry per source with its name, the names of the modules it exports and imports
+ * and its {@link CompactSyntaxTree}. Archives are memory mapped when they are read and can only be read using the same
+ * operator configuration they have been written with.
+ */
+public class ModuleArchive {
+
+    public static final String FILE_EXTENSION = ".mtrc";
+
+    /**
+     * The ASCII characters <code>MTRC</code>.
+     */
+    private static final int MAGIC = 0x4D545243;
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Entry> entries;
+
+    public ModuleArchive(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public static boolean isArchive(File file) {
+        return file.getName().endsWith(FILE_EXTENSION);
+    }
+
+    public void write(File file, Operators operators) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(CompactSyntaxTree.FORMAT_VERSION);
+            writeString(out, operators.getFingerprint());
+
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeString(out, entry.sourceName);
+                writeStrings(out, entry.exports);
+                writeStrings(out, entry.imports);
+                entry.tree.write(out, operators);
+            }
+        }
+    }
+
+    /**
+     * @throws IOException if the file is not an archive, has been written in a different format version or using a
+     *                     different operator configuration or is corrupted
+     */
+    public static ModuleArchive read(File file, Operators operators) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        return read(new ByteBufferInputStream(buffer), operators);
+    }
+
+    /**
+     * Reads an archive from a stream, for example from a resource.
+     *
+     * @see #read(File, Operators)
+     */
+    public static ModuleArchive read(InputStream stream, Operators operators) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a Menter module archive");
+            }
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported module archive format version " + version + ", expected " + FORMAT_VERSION);
+            }
+            final int treeVersion = in.readInt();
+            if (treeVersion != CompactSyntaxTree.FORMAT_VERSION) {
+                throw new IOException("Unsupported syntax tree format version " + treeVersion + ", expected " + CompactSyntaxTree.FORMAT_VERSION);
+            }
+            if (!readString(in).equals(operators.getFingerprint())) {
+                throw new IOException("Module archive has been compiled using a different operator configuration");
+            }
+
+            final int entryCount = in.readInt();
+            if (entryCount < 0) {
+                throw new IOException("Invalid entry count " + entryCount);
+            }
+            final List<Entry> entries = new ArrayList<>(Math.min(entryCount, 64));
+            for (int i = 0; i < entryCount; i++) {
+                final String sourceName = readString(in);
+                final List<String> exports = readStrings(in);
+                final List<String> imports = readStrings(in);
+                entries.add(new Entry(sourceName, exports, imports, CompactSyntaxTree.read(in, operators)));
+            }
+            return new ModuleArchive(entries);
+
+        } catch (EOFException e) {
+            throw new IOException("Module archive is truncated", e);
+        }
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid list size " + size);
+        }
+        final List<String> strings = new ArrayList<>(Math.min(size, 64));
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    public static class Entry {
+        private final String sourceName;
+        private final List<String> exports;
+        private final List<String> imports;
+        private final CompactSyntaxTree tree;
+
+        /**
+         * @param tree the tree as it has been parsed, including the import and export statements
+         */
+        public Entry(String sourceName, List<String> exports, List<String> imports, CompactSyntaxTree tree) {
+            this.sourceName = sourceName;
+            this.exports = Collections.unmodifiableList(new ArrayList<>(exports));
+            this.imports = Collections.unmodifiableList(new ArrayList<>(imports));
+            this.tree = tree;
+        }
+
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        public List<String> getExports() {
+            return exports;
+        }
+
+        public List<String> getImports() {
+            return imports;
+        }
+
+        public CompactSyntaxTree getTree() {
+            return tree;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
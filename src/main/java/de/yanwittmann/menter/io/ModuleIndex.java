@@ -0,0 +1,272 @@
+package de.yanwittmann.menter.io;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Remembers the exported modules and imports of source files and the source files in module directories, so that the
+ * module path does not have to be read again every time a runtime is started.<br>
+ * Every entry stores the modification time and size of its file or directory and is only used as long as both are
+ * unchanged; otherwise the file is read or the directory is listed again. If an index file is given, the entries are
+ * read from it when the index is first used and written back by {@link #save()} if they have changed.
+ */
+public class ModuleIndex {
+
+    private static final Logger LOG = LogManager.getLogger(ModuleIndex.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File indexFile;
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final Map<String, DirectoryEntry> directories = new HashMap<>();
+    private boolean loaded = false;
+    private boolean modified = false;
+
+    /**
+     * @param indexFile the file to persist the index in or <code>null</code> to only keep it in memory
+     */
+    public ModuleIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return the exports and imports of the file, which is only read if it has changed since it has been indexed.
+     */
+    public FileEntry getFile(File file) throws IOException {
+        load();
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long size = file.length();
+
+        final FileEntry cached = files.get(path);
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached;
+        }
+
+        final CharSequence code = SourceReader.read(file);
+        final FileEntry entry = new FileEntry(lastModified, size, findExports(code), findImports(code));
+        files.put(path, entry);
+        modified = true;
+        return entry;
+    }
+
+    /**
+     * @return the <code>.mtr</code> files directly inside the directory, which is only listed again if it has
+     * changed since it has been indexed.
+     */
+    public List<File> listModuleFiles(File directory) {
+        load();
+        final String path = directory.getAbsolutePath();
+        final long lastModified = directory.lastModified();
+
+        final DirectoryEntry cached = directories.get(path);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.toFiles(directory);
+        }
+
+        final List<String> names = new ArrayList<>();
+        final File[] children = directory.listFiles((dir, name) -> name.endsWith(".mtr"));
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile()) names.add(child.getName());
+            }
+        }
+        Collections.sort(names);
+
+        final DirectoryEntry entry = new DirectoryEntry(lastModified, names);
+        directories.put(path, entry);
+        modified = true;
+        return entry.toFiles(directory);
+    }
+
+    /**
+     * Writes the index to the index file if it has been modified since it was read. Entries of files and directories
+     * that no longer exist are removed.
+     */
+    public void save() {
+        if (indexFile == null || !modified) return;
+
+        files.keySet().removeIf(path -> !new File(path).isFile());
+        directories.keySet().removeIf(path -> !new File(path).isDirectory());
+
+        File temporaryFile = null;
+        try {
+            final File directory = indexFile.getAbsoluteFile().getParentFile();
+            Files.createDirectories(directory.toPath());
+            temporaryFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                write(out);
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            modified = false;
+
+        } catch (IOException e) {
+            LOG.warn("Could not store module index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (indexFile == null || !indexFile.isFile()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            read(in);
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable module index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+            files.clear();
+            directories.clear();
+        }
+    }
+
+    private void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+
+        out.writeInt(files.size());
+        for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+            out.writeUTF(file.getKey());
+            out.writeLong(file.getValue().lastModified);
+            out.writeLong(file.getValue().size);
+            writeStrings(out, file.getValue().exports);
+            writeStrings(out, file.getValue().imports);
+        }
+
+        out.writeInt(directories.size());
+        for (Map.Entry<String, DirectoryEntry> directory : directories.entrySet()) {
+            out.writeUTF(directory.getKey());
+            out.writeLong(directory.getValue().lastModified);
+            writeStrings(out, directory.getValue().fileNames);
+        }
+    }
+
+    private void read(DataInput in) throws IOException {
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported module index format version " + version + ", expected " + FORMAT_VERSION);
+        }
+
+        final int fileCount = in.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            final String path = in.readUTF();
+            files.put(path, new FileEntry(in.readLong(), in.readLong(), readStrings(in), readStrings(in)));
+        }
+
+        final int directoryCount = in.readInt();
+        for (int i = 0; i < directoryCount; i++) {
+            final String path = in.readUTF();
+            directories.put(path, new DirectoryEntry(in.readLong(), readStrings(in)));
+        }
+    }
+
+    private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid list size " + size);
+        }
+        final List<String> strings = new ArrayList<>(Math.min(size, 64));
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * export [symbol] as moduleName
+     */
+    public static List<String> findExports(CharSequence code) {
+        final List<String> exports = new ArrayList<>();
+        for (String line : SourceReader.findLinesStartingWith(code, "export ")) {
+            final String[] split = line.split(" ");
+            exports.add(split[split.length - 1]);
+        }
+        return exports;
+    }
+
+    /**
+     * import TestModule<br>
+     * import TestModule as TM<br>
+     * import TestModule inline
+     */
+    public static List<String> findImports(CharSequence code) {
+        final List<String> imports = new ArrayList<>();
+        for (String line : SourceReader.findLinesStartingWith(code, "import")) {
+            final String[] split = line.split(" ");
+            if (split.length > 1) {
+                imports.add(split[1]);
+            }
+        }
+        return imports;
+    }
+
+    public static class FileEntry {
+        private final long lastModified;
+        private final long size;
+        private final List<String> exports;
+        private final List<String> imports;
+
+        private FileEntry(long lastModified, long size, List<String> exports, List<String> imports) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.exports = Collections.unmodifiableList(exports);
+            this.imports = Collections.unmodifiableList(imports);
+        }
+
+        /**
+         * @return the names of the modules exported by the file.
+         */
+        public List<String> getExports() {
+            return exports;
+        }
+
+        /**
+         * @return the names of the modules imported by the file.
+         */
+        public List<String> getImports() {
+            return imports;
+        }
+    }
+
+    private static class DirectoryEntry {
+        private final long lastModified;
+        private final List<String> fileNames;
+
+        private DirectoryEntry(long lastModified, List<String> fileNames) {
+            this.lastModified = lastModified;
+            this.fileNames = fileNames;
+        }
+
+        private List<File> toFiles(File directory) {
+            final List<File> result = new ArrayList<>(fileNames.size());
+            for (String fileName : fileNames) {
+                result.add(new File(directory, fileName));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package de.yanwittmann.menter.io;
+
+import de.yanwittmann.menter.operator.Operators;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Modules that are packaged as resources of a class loader, for example in a jar, instead of files on the module
+ * path.<br>
+ * The modules are listed in an index file <code>modules.properties</code> inside of a resource directory, which maps
+ * every module name to the resource that exports it, relative to the directory:
+ * <pre>
+ * http=http.mtr
+ * json=lib/json.mtr
+ * strings=bundle.mtrc
+ * </pre>
+ * Resources can either be source files or {@link ModuleArchive}s, which are loaded without lexing and parsing them.
+ * Jars use the directory {@value #JAR_DIRECTORY}. Since only the index is read to find the modules, no directories have
+ * to be listed and no files have to be read before a module is imported. Jars are only opened while a resource is read
+ * from them, so they are not kept open or locked.
+ */
+public class ModuleResourceIndex {
+
+    public static final String CLASSPATH_PREFIX = "classpath:";
+    public static final String INDEX_FILE_NAME = "modules.properties";
+    public static final String JAR_DIRECTORY = "META-INF/menter";
+
+    private final ClassLoader classLoader;
+    private final File jar;
+    private final String directory;
+    private final String description;
+    private Map<String, String> modules;
+
+    public ModuleResourceIndex(ClassLoader classLoader, String directory, String description) {
+        this(classLoader, null, directory, description);
+    }
+
+    private ModuleResourceIndex(ClassLoader classLoader, File jar, String directory, String description) {
+        this.classLoader = classLoader;
+        this.jar = jar;
+        this.directory = normalizeDirectory(directory);
+        this.description = description;
+    }
+
+    /**
+     * @param directory the resource directory that contains the index, with or without the {@value #CLASSPATH_PREFIX}
+     *                  prefix
+     */
+    public static ModuleResourceIndex ofClasspath(String directory) {
+        if (directory.startsWith(CLASSPATH_PREFIX)) {
+            directory = directory.substring(CLASSPATH_PREFIX.length());
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ModuleResourceIndex.class.getClassLoader();
+        }
+        return new ModuleResourceIndex(classLoader, directory, CLASSPATH_PREFIX + normalizeDirectory(directory));
+    }
+
+    public static ModuleResourceIndex ofJar(File jar) {
+        return new ModuleResourceIndex(null, jar.getAbsoluteFile(), JAR_DIRECTORY, jar.getAbsolutePath());
+    }
+
+    public static boolean isJar(File file) {
+        return file.getName().endsWith(".jar");
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the module names mapped to the resources that export them. The index is only read once.
+     * @throws IOException if the index does not exist or cannot be read. The index is treated as empty afterwards.
+     */
+    public synchronized Map<String, String> getModules() throws IOException {
+        if (modules == null) {
+            modules = Collections.emptyMap();
+            final Properties properties = new Properties();
+            try (Reader reader = openReader(INDEX_FILE_NAME)) {
+                properties.load(reader);
+            }
+
+            final Map<String, String> modules = new LinkedHashMap<>();
+            for (String moduleName : properties.stringPropertyNames()) {
+                modules.put(moduleName, properties.getProperty(moduleName).trim());
+            }
+            this.modules = Collections.unmodifiableMap(modules);
+        }
+        return modules;
+    }
+
+    public static boolean isArchive(String resource) {
+        return resource.endsWith(ModuleArchive.FILE_EXTENSION);
+    }
+
+    public CharSequence readSource(String resource) throws IOException {
+        try (Reader reader = openReader(resource)) {
+            return SourceReader.read(reader);
+        }
+    }
+
+    public ModuleArchive readArchive(String resource, Operators operators) throws IOException {
+        try (InputStream stream = new BufferedInputStream(openStream(resource))) {
+            return ModuleArchive.read(stream, operators);
+        }
+    }
+
+    private Reader openReader(String resource) throws IOException {
+        return new InputStreamReader(openStream(resource), StandardCharsets.UTF_8);
+    }
+
+    private InputStream openStream(String resource) throws IOException {
+        final String path = directory + resource;
+        if (jar != null) {
+            return readJarEntry(path);
+        }
+
+        final InputStream stream = classLoader.getResourceAsStream(path);
+        if (stream == null) {
+            throw new FileNotFoundException("Resource " + path + " not found in " + description);
+        }
+        return stream;
+    }
+
+    /**
+     * Reads the entry into memory, so that the jar can be closed before the entry is parsed.
+     */
+    private InputStream readJarEntry(String path) throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            final ZipEntry entry = jarFile.getEntry(path);
+            if (entry == null) {
+                throw new FileNotFoundException("Resource " + path + " not found in " + description);
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream stream = jarFile.getInputStream(entry)) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+            }
+            return new ByteArrayInputStream(bytes.toByteArray());
+        }
+    }
+
+    private static String normalizeDirectory(String directory) {
+        directory = directory.replace('\\', '/');
+        while (directory.startsWith("/")) {
+            directory = directory.substring(1);
+        }
+        if (!directory.isEmpty() && !directory.endsWith("/")) {
+            directory += "/";
+        }
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,119 @@
+package de.yanwittmann.menter.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads Menter source code into a single {@link CharSequence} that can be passed to the lexer directly, without
+ * splitting it into lines and joining them back together.
+ */
+public abstract class SourceReader {
+
+    /**
+     * Maps the file into memory and decodes it as UTF-8 into a single char buffer.
+     */
+    public static CharSequence read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            return decoder.decode(mapped);
+        }
+    }
+
+    public static CharSequence read(Reader reader) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder;
+    }
+
+    /**
+     * Collects all lines that start with the given prefix, without creating strings for the other lines.
+     */
+    public static List<String> findLinesStartingWith(CharSequence source, String prefix) {
+        final List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < source.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < source.length() && source.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            if (regionStartsWith(source, lineStart, lineEnd, prefix)) {
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && source.charAt(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                lines.add(source.subSequence(lineStart, contentEnd).toString());
+            }
+
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+    private static boolean regionStartsWith(CharSequence source, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (source.charAt(start + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a view on two char sequences, as if they were one. Neither of them is copied.
+     */
+    public static CharSequence concat(CharSequence first, CharSequence second) {
+        return new ConcatenatedCharSequence(first, second);
+    }
+
+    private static class ConcatenatedCharSequence implements CharSequence {
+        private final CharSequence first;
+        private final CharSequence second;
+
+        private ConcatenatedCharSequence(CharSequence first, CharSequence second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public int length() {
+            return first.length() + second.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < first.length() ? first.charAt(index) : second.charAt(index - first.length());
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            final int split = first.length();
+            if (end <= split) {
+                return first.subSequence(start, end);
+            } else if (start >= split) {
+                return second.subSequence(start - split, end - split);
+            }
+            return new StringBuilder(end - start).append(first, start, split).append(second, 0, end - split);
+        }
+
+        @Override
+        public String toString() {
+            return first.toString() + second;
+        }
+    }
+}
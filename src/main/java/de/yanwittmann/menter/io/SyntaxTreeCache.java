@@ -0,0 +1,144 @@
+package de.yanwittmann.menter.io;
+
+import de.yanwittmann.menter.operator.Operators;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
+import de.yanwittmann.menter.parser.ParserNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of parsed syntax trees, so that sources that have not changed since the last run do not have to be
+ * lexed and parsed again.<br>
+ * The trees are stored as {@link CompactSyntaxTree}s in files named after a hash of the source code, the format
+ * version, the node and token types, the size of the grammar and the symbols, precedences and associativity of the
+ * operators, so that a changed source, parser or operator configuration never reads an outdated tree. Unreadable
+ * entries are treated as missing.
+ */
+public class SyntaxTreeCache {
+
+    private static final Logger LOG = LogManager.getLogger(SyntaxTreeCache.class);
+
+    private static final String FILE_EXTENSION = ".mast";
+
+    private final File directory;
+    private final Operators operators;
+
+    public SyntaxTreeCache(File directory, Operators operators) {
+        this.directory = directory;
+        this.operators = operators;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the cached tree of the source or <code>null</code> if it has not been stored yet.
+     */
+    public ParserNode load(CharSequence source) {
+        final File file = getCacheFile(source);
+        if (!file.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return CompactSyntaxTree.read(in, operators).toParserNode();
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable syntax tree cache entry " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the tree of the source. Must be called before the tree is modified by the evaluation.
+     */
+    public void store(CharSequence source, ParserNode root) {
+        final File file = getCacheFile(source);
+        File temporaryFile = null;
+
+        try {
+            final CompactSyntaxTree tree = CompactSyntaxTree.of(root);
+            Files.createDirectories(directory.toPath());
+            temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                tree.write(out, operators);
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Could not store syntax tree in cache " + directory.getAbsolutePath() + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    private File getCacheFile(CharSequence source) {
+        return new File(directory, createKey(source) + FILE_EXTENSION);
+    }
+
+    private String createKey(CharSequence source) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        final String header = CompactSyntaxTree.FORMAT_VERSION + "\n" + CompactSyntaxTree.TYPES_FINGERPRINT + "\n" +
+                              operators.getGrammar().getApplyOnceRules().size() + "/" + operators.getGrammar().getRules().size() + "\n" +
+                              operators.getFingerprint();
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        updateDigest(digest, source);
+
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Encodes the source as UTF-8 in chunks, so that large sources are not copied into a string and a byte array.
+     */
+    private static void updateDigest(MessageDigest digest, CharSequence source) {
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer in = CharBuffer.wrap(source);
+        final ByteBuffer out = ByteBuffer.allocate(8192);
+
+        while (true) {
+            final CoderResult result = encoder.encode(in, out, true);
+            out.flip();
+            digest.update(out);
+            out.clear();
+            if (result.isUnderflow()) break;
+        }
+        while (encoder.flush(out).isOverflow()) {
+            out.flip();
+            digest.update(out);
+            out.clear();
+        }
+        out.flip();
+        digest.update(out);
+    }
+}
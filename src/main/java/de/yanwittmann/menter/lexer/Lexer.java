@@ -1,14 +1,16 @@
 package de.yanwittmann.menter.lexer;
 
 import de.yanwittmann.menter.interpreter.MenterDebugger;
+import de.yanwittmann.menter.io.SourceReader;
+import de.yanwittmann.menter.operator.OperatorTrie;
 import de.yanwittmann.menter.operator.Operators;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Spliterator;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
 import java.util.function.Consumer;
 
 public class Lexer {
@@ -21,7 +23,7 @@ public class Lexer {
         this.operators = operators;
     }
 
-    public List<Token> parse(String expression) {
+    public List<Token> parse(CharSequence expression) {
         List<Token> tokens = new ArrayList<>();
 
         new TokenIterator(expression, operators).forEach(tokens::add);
@@ -42,38 +44,23 @@ public class Lexer {
         return parse(String.join("\n", expressions));
     }
 
-    public Operators getOperators() {
-        return operators;
+    public List<Token> parse(Reader reader) throws IOException {
+        return parse(SourceReader.read(reader));
     }
 
-    private static class StringIterator {
-        private final String string;
-        private int position = 0;
-
-        public StringIterator(String string) {
-            this.string = string;
-        }
-
-        public char next() {
-            return string.charAt(position++);
-        }
-
-        public char peek() {
-            return string.charAt(position);
-        }
-
-        public char peek(int offset) {
-            if (position + offset >= string.length()) return '\0';
-            return string.charAt(position + offset);
-        }
+    public List<Token> parse(File file) throws IOException {
+        return parse(SourceReader.read(file));
+    }
 
-        public boolean hasNext() {
-            return position < string.length();
-        }
+    /**
+     * Creates an iterator that lexes the next token only when it is requested. The EOF token is not included.
+     */
+    public Iterator<Token> tokenize(CharSequence expression) {
+        return new TokenIterator(expression, operators);
+    }
 
-        public void stepBack() {
-            position--;
-        }
+    public Operators getOperators() {
+        return operators;
     }
 
     public enum TokenType {
@@ -95,15 +82,132 @@ public class Lexer {
         }
     }
 
+    private final static int CHARACTER_CLASS_OTHER = 0;
+    private final static int CHARACTER_CLASS_WHITESPACE = 1;
+    private final static int CHARACTER_CLASS_DIGIT = 2;
+    private final static int CHARACTER_CLASS_IDENTIFIER = 3;
+    private final static int CHARACTER_CLASS_SINGLE_CHARACTER_TOKEN = 4;
+
+    /**
+     * Character classes for the ASCII range, characters outside of it are classified using {@link Character}.
+     */
+    private final static byte[] CHARACTER_CLASSES = new byte[128];
+
+    private final static Map<String, TokenType> KEYWORDS = new HashMap<>();
+
+    static {
+        for (char c = 0; c < CHARACTER_CLASSES.length; c++) {
+            if (Character.isDigit(c)) {
+                CHARACTER_CLASSES[c] = CHARACTER_CLASS_DIGIT;
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                CHARACTER_CLASSES[c] = CHARACTER_CLASS_IDENTIFIER;
+            } else if (Character.isWhitespace(c)) {
+                CHARACTER_CLASSES[c] = CHARACTER_CLASS_WHITESPACE;
+            }
+        }
+        for (char c : new char[]{'(', ')', '[', ']', '{', '}', ',', ';', ':', '.'}) {
+            CHARACTER_CLASSES[c] = CHARACTER_CLASS_SINGLE_CHARACTER_TOKEN;
+        }
+
+        for (String keyword : new String[]{"if", "else", "elif", "export", "as", "import", "inline", "native", "return", "while", "for", "in", "new", "instanceof"}) {
+            KEYWORDS.put(keyword, TokenType.KEYWORD);
+        }
+        KEYWORDS.put("true", TokenType.BOOLEAN_LITERAL);
+        KEYWORDS.put("false", TokenType.BOOLEAN_LITERAL);
+        KEYWORDS.put("null", TokenType.OTHER_LITERAL);
+        KEYWORDS.put("pass", TokenType.PASS);
+        KEYWORDS.put("break", TokenType.BREAK);
+        KEYWORDS.put("continue", TokenType.CONTINUE);
+    }
+
+    private static int getCharacterClass(char c) {
+        if (c < CHARACTER_CLASSES.length) {
+            return CHARACTER_CLASSES[c];
+        } else if (Character.isDigit(c)) {
+            return CHARACTER_CLASS_DIGIT;
+        } else if (Character.isLetter(c)) {
+            return CHARACTER_CLASS_IDENTIFIER;
+        } else if (Character.isWhitespace(c)) {
+            return CHARACTER_CLASS_WHITESPACE;
+        }
+        return CHARACTER_CLASS_OTHER;
+    }
+
+    /**
+     * Maps sections of the source code to a single string instance per distinct identifier, without creating a new
+     * string for identifiers that have already been seen.
+     */
+    private static class IdentifierTable {
+        private String[] entries = new String[256];
+        private int size = 0;
+
+        public String intern(CharSequence source, int start, int length) {
+            int hash = 0;
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + source.charAt(i);
+            }
+
+            int index = hash & (entries.length - 1);
+            while (entries[index] != null) {
+                final String entry = entries[index];
+                if (entry.hashCode() == hash && regionEquals(entry, source, start, length)) {
+                    return entry;
+                }
+                index = (index + 1) & (entries.length - 1);
+            }
+
+            final String identifier = source.subSequence(start, start + length).toString();
+            entries[index] = identifier;
+            if (++size * 2 > entries.length) {
+                resize();
+            }
+            return identifier;
+        }
+
+        private void resize() {
+            final String[] oldEntries = entries;
+            entries = new String[oldEntries.length * 2];
+            for (String entry : oldEntries) {
+                if (entry != null) {
+                    int index = entry.hashCode() & (entries.length - 1);
+                    while (entries[index] != null) {
+                        index = (index + 1) & (entries.length - 1);
+                    }
+                    entries[index] = entry;
+                }
+            }
+        }
+
+        private static boolean regionEquals(String string, CharSequence source, int start, int length) {
+            if (string.length() != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (string.charAt(i) != source.charAt(start + i)) return false;
+            }
+            return true;
+        }
+    }
+
     private static class TokenIterator implements Iterable<Token>, Iterator<Token> {
-        private final StringIterator stringIterator;
-        private final Operators operators;
+        private final CharSequence source;
+        private final int sourceLength;
+        private int position = 0;
+
+        private final OperatorTrie operatorTrie;
+        private final IdentifierTable identifiers = new IdentifierTable();
+
         private Token nextToken;
         int lastIndentation = 0;
 
-        public TokenIterator(String expression, Operators operators) {
-            this.stringIterator = new StringIterator(expression + " ");
-            this.operators = operators;
+        // the current token is the section [tokenStart, tokenEnd) of the source, unless escape sequences were
+        // found, in which case the processed characters are collected in the escapedBuffer
+        private int tokenStart = -1;
+        private int tokenEnd = -1;
+        private StringBuilder escapedBuffer;
+
+        public TokenIterator(CharSequence source, Operators operators) {
+            this.source = source;
+            this.sourceLength = source.length();
+            this.operatorTrie = operators.getOperatorTrie();
             findNext();
         }
 
@@ -119,324 +223,302 @@ public class Lexer {
             return nextToken != null;
         }
 
-        private final static char[] SINGLE_CHARACTER_TOKENS = {
-                '(', ')', '[', ']', '{', '}',
-                ',', ';',
-                ':', '.',
-        };
+        /**
+         * The source is treated as if a single space was appended to it, which terminates the last token.
+         */
+        private char charAt(int index) {
+            if (index < sourceLength) return source.charAt(index);
+            if (index == sourceLength) return ' ';
+            return '\0';
+        }
+
+        private char nextChar() {
+            return charAt(position++);
+        }
+
+        private char peek() {
+            return charAt(position);
+        }
+
+        private char peek(int offset) {
+            return charAt(position + offset);
+        }
 
-        private final static String[] KEYWORDS = {
-                "if", "else", "elif", "true", "false", "null", "export", "as", "import", "inline", "native", "return",
-                "while", "for", "break", "continue", "in", "new", "instanceof", "pass"
-        };
+        private boolean hasNextChar() {
+            return position < sourceLength + 1;
+        }
 
-        private boolean isSingleCharacterToken(char c) {
-            for (char token : SINGLE_CHARACTER_TOKENS) {
-                if (token == c) return true;
+        private void stepBack() {
+            position--;
+        }
+
+        private boolean regionMatches(String symbol, int start) {
+            for (int i = 0; i < symbol.length(); i++) {
+                if (charAt(start + i) != symbol.charAt(i)) return false;
             }
-            return false;
+            return true;
         }
 
-        private boolean isOperator(String s) {
-            return this.operators.getOperators().stream()
-                    .anyMatch(operator -> operator.getSymbol().equals(s));
+        private void append(int index) {
+            if (escapedBuffer != null) {
+                escapedBuffer.append(charAt(index));
+            } else {
+                if (tokenStart == -1) tokenStart = index;
+                tokenEnd = index + 1;
+            }
         }
 
-        private boolean isKeyword(String s) {
-            for (String token : KEYWORDS) {
-                if (token.equals(s)) return true;
+        private void appendEscaped(int escapeStart, String processed) {
+            if (escapedBuffer == null) {
+                if (tokenStart == -1) {
+                    tokenStart = escapeStart;
+                } else if (processed.length() == position - escapeStart && regionMatches(processed, escapeStart)) {
+                    // escape sequence is kept as it is, no need to copy the token
+                    tokenEnd = position;
+                    return;
+                }
+                escapedBuffer = new StringBuilder();
+                escapedBuffer.append(source, tokenStart, tokenEnd == -1 ? tokenStart : tokenEnd);
             }
-            return false;
+            escapedBuffer.append(processed);
         }
 
-        private boolean isIdentifierCharacter(char c) {
-            return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+        private void resetToken() {
+            tokenStart = -1;
+            tokenEnd = -1;
+            escapedBuffer = null;
         }
 
         private void findNext() {
-            final StringBuffer buffer = new StringBuffer();
+            resetToken();
             int state = 0;
 
-            while (this.stringIterator.hasNext()) {
-                final char c = this.stringIterator.next();
+            while (hasNextChar()) {
+                final int index = position;
+                final char c = nextChar();
 
                 if (c == '\\') {
-                    final char next = this.stringIterator.next();
+                    final char next = nextChar();
                     if (next == 'n') {
-                        buffer.append('\n');
+                        appendEscaped(index, "\n");
                     } else if (next == 'r') {
-                        buffer.append('\r');
+                        appendEscaped(index, "\r");
                     } else if (next == 't') {
-                        buffer.append('\t');
+                        appendEscaped(index, "\t");
                     } else if (next == 'b') {
-                        buffer.append('\b');
+                        appendEscaped(index, "\b");
                     } else if (next == 'f') {
-                        buffer.append('\f');
+                        appendEscaped(index, "\f");
                     } else if (next == 'u') {
                         final char[] unicode = new char[4];
                         for (int i = 0; i < 4; i++) {
-                            unicode[i] = this.stringIterator.next();
+                            unicode[i] = nextChar();
                         }
-                        buffer.append((char) Integer.parseInt(new String(unicode), 16));
+                        appendEscaped(index, String.valueOf((char) Integer.parseInt(new String(unicode), 16)));
                     } else if (state != 10) {
-                        buffer.append(next);
+                        appendEscaped(index, String.valueOf(next));
                     } else {  // 10 = regex
                         if (next != '\\' && next != '/') {
-                            buffer.append('\\');
+                            appendEscaped(index, "\\" + next);
+                        } else {
+                            appendEscaped(index, String.valueOf(next));
                         }
-                        buffer.append(next);
                     }
                     continue;
                 }
 
                 switch (state) {
                     case 0:
+                        final int characterClass = getCharacterClass(c);
                         if (c == '\n') {
-                            buffer.append(c);
-                            if (getIndentationValue(this.stringIterator.peek()) > 0) {
+                            append(index);
+                            if (getIndentationValue(peek()) > 0) {
                                 int indentationCount = 0;
                                 int currentIndentationValue;
                                 do {
-                                    currentIndentationValue = getIndentationValue(this.stringIterator.peek());
+                                    currentIndentationValue = getIndentationValue(peek());
                                     indentationCount += currentIndentationValue;
-                                    if (currentIndentationValue > 0) this.stringIterator.next();
-                                } while (currentIndentationValue > 0 && this.stringIterator.hasNext());
+                                    if (currentIndentationValue > 0) nextChar();
+                                } while (currentIndentationValue > 0 && hasNextChar());
 
                                 if (indentationCount > lastIndentation) {
-                                    buffer.setLength(0);
+                                    resetToken();
                                     lastIndentation = indentationCount;
 
                                 } else {
-                                    nextToken = createToken(buffer, TokenType.NEWLINE);
+                                    nextToken = createToken(TokenType.NEWLINE);
                                     lastIndentation = indentationCount;
                                     return;
                                 }
 
                                 continue;
                             } else {
-                                nextToken = createToken(buffer, TokenType.NEWLINE);
+                                nextToken = createToken(TokenType.NEWLINE);
                                 lastIndentation = 0;
                                 return;
                             }
-                        } else if (Character.isWhitespace(c)) {
+                        } else if (characterClass == CHARACTER_CLASS_WHITESPACE) {
                             continue;
                         } else if (c == '#') {
-                            buffer.append(c);
+                            append(index);
                             state = 12;
                         } else if (c == '0') {
-                            buffer.append(c);
+                            append(index);
                             state = 3;
-                        } else if (Character.isDigit(c)) {
-                            buffer.append(c);
+                        } else if (characterClass == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                             state = 1;
-                        } else if (c == '.' && Character.isDigit(this.stringIterator.peek())) {
-                            buffer.append(c);
+                        } else if (c == '.' && getCharacterClass(peek()) == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                             state = 2;
                         } else if (c == '"') {
-                            buffer.append(c);
+                            append(index);
                             state = 7;
-                        } else if (c == 'r' && this.stringIterator.peek() == '/') {
-                            buffer.append(c);
-                            buffer.append(this.stringIterator.next());
+                        } else if (c == 'r' && peek() == '/') {
+                            append(index);
+                            append(position);
+                            nextChar();
                             state = 10;
-                        } else if (isIdentifierCharacter(c)) {
-                            buffer.append(c);
+                        } else if (characterClass == CHARACTER_CLASS_IDENTIFIER) {
+                            append(index);
                             state = 8;
-                        } else if (isSingleCharacterToken(c) &&
-                                   (!isOperator(String.valueOf(c) + this.stringIterator.peek()) && !isOperator(String.valueOf(c) + this.stringIterator.peek() + this.stringIterator.peek(1)))) {
-                            buffer.append(c);
-                            if (c == '(') {
-                                nextToken = createToken(buffer, TokenType.OPEN_PARENTHESIS);
-                            } else if (c == ')') {
-                                nextToken = createToken(buffer, TokenType.CLOSE_PARENTHESIS);
-                            } else if (c == '[') {
-                                nextToken = createToken(buffer, TokenType.OPEN_SQUARE_BRACKET);
-                            } else if (c == ']') {
-                                nextToken = createToken(buffer, TokenType.CLOSE_SQUARE_BRACKET);
-                            } else if (c == '{') {
-                                nextToken = createToken(buffer, TokenType.OPEN_CURLY_BRACKET);
-                            } else if (c == '}') {
-                                nextToken = createToken(buffer, TokenType.CLOSE_CURLY_BRACKET);
-                            } else if (c == ',') {
-                                nextToken = createToken(buffer, TokenType.COMMA);
-                            } else if (c == ';') {
-                                nextToken = createToken(buffer, TokenType.SEMICOLON);
-                            } else if (c == '.') {
-                                nextToken = createToken(buffer, TokenType.DOT);
-                            } else {
-                                nextToken = createToken(buffer, TokenType.OPERATOR);
-                            }
-                            return;
-                        } else if (isOperator(String.valueOf(c) + this.stringIterator.peek() + this.stringIterator.peek(1))) {
-                            buffer.append(c);
-                            buffer.append(this.stringIterator.next());
-                            buffer.append(this.stringIterator.next());
-                            nextToken = createToken(buffer, TokenType.OPERATOR);
-                            return;
-                        } else if (isOperator(String.valueOf(c) + this.stringIterator.peek())) {
-                            buffer.append(c);
-                            buffer.append(this.stringIterator.next());
-                            nextToken = createToken(buffer, TokenType.OPERATOR);
-                            return;
-                        } else if (isOperator(String.valueOf(c))) {
-                            buffer.append(c);
-                            nextToken = createToken(buffer, TokenType.OPERATOR);
-                            return;
                         } else {
-                            buffer.append(c);
+                            final String operator = operatorTrie.findLongestMatch(source, index);
+                            if (characterClass == CHARACTER_CLASS_SINGLE_CHARACTER_TOKEN && (operator == null || operator.length() == 1)) {
+                                append(index);
+                                nextToken = createToken(findSingleCharacterTokenType(c));
+                                return;
+                            } else if (operator != null) {
+                                position = index + operator.length();
+                                nextToken = TokenType.OPERATOR.create(operator, index);
+                                return;
+                            }
+                            append(index);
                             state = 9;
                         }
                         break;
                     case 1:
-                        if (Character.isDigit(c)) {
-                            buffer.append(c);
+                        if (getCharacterClass(c) == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                         } else if (c == '.') {
-                            buffer.append(c);
+                            append(index);
                             state = 2;
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 2:
-                        if (Character.isDigit(c)) {
-                            buffer.append(c);
+                        if (getCharacterClass(c) == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 3:
                         if (c == 'x') {
-                            buffer.append(c);
+                            append(index);
                             state = 4;
                         } else if (c == 'b') {
-                            buffer.append(c);
+                            append(index);
                             state = 5;
                         } else if (c == 'o') {
-                            buffer.append(c);
+                            append(index);
                             state = 6;
-                        } else if (Character.isDigit(c)) {
-                            buffer.append(c);
+                        } else if (getCharacterClass(c) == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                             state = 1;
                         } else if (c == '.') {
-                            buffer.append(c);
+                            append(index);
                             state = 2;
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 4:
-                        if (Character.isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
-                            buffer.append(c);
+                        if (getCharacterClass(c) == CHARACTER_CLASS_DIGIT || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                            append(index);
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 5:
                         if (c == '0' || c == '1') {
-                            buffer.append(c);
+                            append(index);
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 6:
                         if (c >= '0' && c <= '7') {
-                            buffer.append(c);
+                            append(index);
                         } else {
-                            nextToken = createToken(buffer, TokenType.NUMBER_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.NUMBER_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 7:
+                        append(index);
                         if (c == '"') {
-                            buffer.append(c);
-                            nextToken = createToken(buffer, TokenType.STRING_LITERAL);
+                            nextToken = createToken(TokenType.STRING_LITERAL);
                             return;
-                        } else {
-                            buffer.append(c);
                         }
                         break;
                     case 8:
-                        if (isIdentifierCharacter(c)) {
-                            buffer.append(c);
+                        final int identifierCharacterClass = getCharacterClass(c);
+                        if (identifierCharacterClass == CHARACTER_CLASS_IDENTIFIER || identifierCharacterClass == CHARACTER_CLASS_DIGIT) {
+                            append(index);
                         } else {
-                            if (isKeyword(buffer.toString())) {
-                                final String keyword = buffer.toString();
-                                switch (keyword) {
-                                    case "true":
-                                    case "false":
-                                        nextToken = createToken(buffer, TokenType.BOOLEAN_LITERAL);
-                                        break;
-                                    case "pass":
-                                        nextToken = createToken(buffer, TokenType.PASS);
-                                        break;
-                                    case "break":
-                                        nextToken = createToken(buffer, TokenType.BREAK);
-                                        break;
-                                    case "continue":
-                                        nextToken = createToken(buffer, TokenType.CONTINUE);
-                                        break;
-                                    case "null":
-                                        nextToken = createToken(buffer, TokenType.OTHER_LITERAL);
-                                        break;
-                                    default:
-                                        nextToken = createToken(buffer, TokenType.KEYWORD);
-                                        break;
-                                }
-                            } else {
-                                nextToken = createToken(buffer, TokenType.IDENTIFIER);
-                            }
-                            this.stringIterator.stepBack();
+                            final String identifier = escapedBuffer != null
+                                    ? escapedBuffer.toString()
+                                    : identifiers.intern(source, tokenStart, tokenEnd - tokenStart);
+                            nextToken = KEYWORDS.getOrDefault(identifier, TokenType.IDENTIFIER).create(identifier, tokenStart);
+                            stepBack();
                             return;
                         }
                         break;
                     case 9:
-                        if (isSingleCharacterToken(c) || isOperator(String.valueOf(c))) {
-                            nextToken = createToken(buffer, TokenType.OPERATOR);
-                            this.stringIterator.stepBack();
-                            return;
-                        } else if (isOperator(String.valueOf(c) + this.stringIterator.peek())) {
-                            nextToken = createToken(buffer, TokenType.OPERATOR);
-                            this.stringIterator.stepBack();
+                        if (getCharacterClass(c) == CHARACTER_CLASS_SINGLE_CHARACTER_TOKEN || operatorTrie.findLongestMatch(source, index, 2) != null) {
+                            nextToken = createToken(TokenType.OPERATOR);
+                            stepBack();
                             return;
                         } else {
-                            buffer.append(c);
+                            append(index);
                         }
+                        break;
                     case 10: // regex
+                        append(index);
                         if (c == '/') {
-                            buffer.append(c);
-                            final char peek = this.stringIterator.peek();
+                            final char peek = peek();
                             if (peek == 'g' || peek == 'i' || peek == 'm') {
                                 state = 11;
                             } else {
-                                nextToken = createToken(buffer, TokenType.REGEX_LITERAL);
+                                nextToken = createToken(TokenType.REGEX_LITERAL);
                                 return;
                             }
-                        } else {
-                            buffer.append(c);
                         }
                         break;
                     case 11: // regex flags
                         if (c == 'g' || c == 'i' || c == 'm') {
-                            buffer.append(c);
+                            append(index);
                         } else {
-                            nextToken = createToken(buffer, TokenType.REGEX_LITERAL);
-                            this.stringIterator.stepBack();
+                            nextToken = createToken(TokenType.REGEX_LITERAL);
+                            stepBack();
                             return;
                         }
                         break;
                     case 12: // comment start
-                        buffer.append(c);
+                        append(index);
                         if (c == '#') {
                             state = 13; // multiline comment ##
                         } else {
@@ -444,7 +526,7 @@ public class Lexer {
                         }
                         break;
                     case 13: // multiline comment
-                        buffer.append(c);
+                        append(index);
                         if (c == '#') {
                             state = 15; // potential comment end
                         } else {
@@ -452,27 +534,27 @@ public class Lexer {
                         }
                         break;
                     case 14: // multiline comment body
-                        buffer.append(c);
+                        append(index);
                         if (c == '#') {
                             state = 15; // potential comment end
                         }
                         break;
                     case 15: // potential multiline comment end
-                        buffer.append(c);
+                        append(index);
                         if (c == '#') {
-                            nextToken = createToken(buffer, TokenType.COMMENT);
+                            nextToken = createToken(TokenType.COMMENT);
                             return;
                         } else {
                             state = 14; // return to comment body
                         }
                         break;
                     case 16: // single line comment
-                        if (c == '\n' || c == '\r' || !this.stringIterator.hasNext()) {
-                            nextToken = createToken(buffer, TokenType.COMMENT);
-                            this.stringIterator.stepBack();
+                        if (c == '\n' || c == '\r' || !hasNextChar()) {
+                            nextToken = createToken(TokenType.COMMENT);
+                            stepBack();
                             return;
                         } else {
-                            buffer.append(c);
+                            append(index);
                         }
 
                 }
@@ -481,6 +563,31 @@ public class Lexer {
             nextToken = null;
         }
 
+        private TokenType findSingleCharacterTokenType(char c) {
+            switch (c) {
+                case '(':
+                    return TokenType.OPEN_PARENTHESIS;
+                case ')':
+                    return TokenType.CLOSE_PARENTHESIS;
+                case '[':
+                    return TokenType.OPEN_SQUARE_BRACKET;
+                case ']':
+                    return TokenType.CLOSE_SQUARE_BRACKET;
+                case '{':
+                    return TokenType.OPEN_CURLY_BRACKET;
+                case '}':
+                    return TokenType.CLOSE_CURLY_BRACKET;
+                case ',':
+                    return TokenType.COMMA;
+                case ';':
+                    return TokenType.SEMICOLON;
+                case '.':
+                    return TokenType.DOT;
+                default:
+                    return TokenType.OPERATOR;
+            }
+        }
+
         private int getIndentationValue(char c) {
             if (c == '\t') {
                 return 4;
@@ -490,12 +597,11 @@ public class Lexer {
             return 0;
         }
 
-        private Token createToken(StringBuffer buffer, TokenType type) {
-            return type.create(buffer.toString(), this.stringIterator.position - buffer.length());
-        }
-
-        private void unexpectedCharacter(char c) {
-            throw new RuntimeException("Unexpected character: \"" + c + "\" around position " + this.stringIterator.position);
+        private Token createToken(TokenType type) {
+            if (escapedBuffer != null) {
+                return type.create(escapedBuffer.toString(), tokenStart);
+            }
+            return new Token(type, source, tokenStart, Math.min(tokenEnd, sourceLength) - tokenStart);
         }
 
         @Override
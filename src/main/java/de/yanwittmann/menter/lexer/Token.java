@@ -3,22 +3,52 @@ package de.yanwittmann.menter.lexer;
 import de.yanwittmann.menter.operator.Operator;
 
 public class Token {
-    public final String value;
     public final Lexer.TokenType type;
     public final int position;
+    private final int length;
+    /**
+     * Both fields are volatile, since tokens can be read from multiple threads, for example when sources are parsed
+     * concurrently. Materializing the value is idempotent, so racing threads at most create the string twice.
+     */
+    private volatile CharSequence source;
+    private volatile String value;
 
     public Token(Lexer.TokenType type, String value, int position) {
         this.value = value;
         this.type = type;
         this.position = position;
+        this.length = value == null ? 0 : value.length();
     }
 
     public Token(Lexer.TokenType type, String value) {
         this(type, value, -1);
     }
 
+    /**
+     * Creates a token that spans over a section of the source code. The value is only materialized when it is
+     * requested the first time.
+     */
+    public Token(Lexer.TokenType type, CharSequence source, int position, int length) {
+        this.type = type;
+        this.source = source;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * The value used to be the public field <code>value</code>. Since the value of tokens that span over the source
+     * code is only materialized on the first access, it can only be read using this method.
+     */
     public String getValue() {
-        return value;
+        final String value = this.value;
+        if (value != null) return value;
+
+        final CharSequence source = this.source;
+        if (source == null) return this.value;
+        final String materialized = source.subSequence(position, position + length).toString();
+        this.value = materialized;
+        this.source = null;
+        return materialized;
     }
 
     public Lexer.TokenType getType() {
@@ -29,8 +59,13 @@ public class Token {
         return position;
     }
 
+    public int getLength() {
+        return length;
+    }
+
     @Override
     public String toString() {
+        final String value = getValue();
         return type + (Operator.isEmpty(value) ? "" : ": " + value);
     }
 }
@@ -11,7 +11,6 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -72,134 +71,128 @@ public abstract class Operator {
         }
     }
 
-    public ParserRule makeParserRule(List<Operator> operatorsWithPrecedence) {
+    /**
+     * Creates a single rule for all operators that share a precedence level. The tokens are scanned once and the
+     * earliest position at which any of the operators can be applied is replaced by an expression node. The rule only
+     * applies if at least one of the operators should create a parser rule.
+     */
+    public static ParserRule makePrecedenceParserRule(List<Operator> operatorsWithPrecedence) {
         return (tokens) -> {
-            final List<OperatorMatch> operatorMatches = new ArrayList<>();
+            final int[] skippedIndices = new int[operatorsWithPrecedence.size()];
+            Arrays.fill(skippedIndices, -1);
+            OperatorMatch earliestMatch = null;
 
-            operatorMatches.add(findEarliestMatch(tokens, this));
-            if (operatorMatches.get(0) == null) return false;
+            for (int i = 0; i < tokens.size(); i++) {
+                final Object token = tokens.get(i);
+                if (!Parser.isType(token, TokenType.OPERATOR)) continue;
+                final String symbol = ((Token) token).getValue();
 
-            for (Operator operator : operatorsWithPrecedence) {
-                if (operator == this) continue;
-                final OperatorMatch operatorMatch = findEarliestMatch(tokens, operator);
-                if (operatorMatch != null) operatorMatches.add(operatorMatch);
-            }
+                for (int k = 0; k < operatorsWithPrecedence.size(); k++) {
+                    final Operator operator = operatorsWithPrecedence.get(k);
+                    if (skippedIndices[k] == i || !operator.getSymbol().equals(symbol)) continue;
+
+                    final Object nextAfterToken = i + 2 < tokens.size() ? tokens.get(i + 2) : null;
+                    if (Parser.isType(nextAfterToken, TokenType.OPEN_PARENTHESIS) || Parser.isType(nextAfterToken, TokenType.OPEN_SQUARE_BRACKET) ||
+                        Parser.isType(nextAfterToken, TokenType.OPEN_CURLY_BRACKET)) {
+                        skippedIndices[k] = i + 1;
+                        continue;
+                    }
 
-            if (operatorMatches.size() > 0) {
-                final OperatorMatch earliestMatch = operatorMatches.stream()
-                        .min(Comparator.comparingInt(match -> match.start))
-                        .get();
+                    final OperatorMatch match = matchAt(tokens, i, operator);
+                    if (match == null) continue;
 
-                ParserRule.replace(tokens, earliestMatch.operatorParentNode, earliestMatch.start, earliestMatch.end);
-                return true;
+                    if (earliestMatch == null) earliestMatch = match;
+                    if (operator.shouldCreateParserRule()) {
+                        ParserRule.replace(tokens, earliestMatch.operatorParentNode, earliestMatch.start, earliestMatch.end);
+                        return true;
+                    }
+                }
             }
 
             return false;
         };
     }
 
-    private static OperatorMatch findEarliestMatch(List<Object> tokens, Operator checkForOperator) {
+    private static OperatorMatch matchAt(List<Object> tokens, int i, Operator checkForOperator) {
         final boolean isPipelineOperator = checkForOperator.getSymbol().equals("|>") || checkForOperator.getSymbol().equals(">|");
 
-        for (int i = 0; i < tokens.size(); i++) {
-            final Object token = tokens.get(i);
+        final Object before = i > 0 ? tokens.get(i - 1) : null;
+        final Object after = i < tokens.size() - 1 ? tokens.get(i + 1) : null;
 
-            if (token instanceof Token) {
-                final Token operatorCandidate = (Token) token;
-                final boolean symbolEqual = checkForOperator.getSymbol().equals(operatorCandidate.getValue());
+        final boolean hasBefore = Parser.isEvaluableToValue(before);
+        final boolean hasAfter = Parser.isEvaluableToValue(after);
 
-                if (operatorCandidate.getType() == TokenType.OPERATOR && symbolEqual) {
+        final boolean leftMatches = (checkForOperator.isLeftAssociative() && hasBefore) || (!checkForOperator.isLeftAssociative() && !hasBefore);
+        final boolean rightMatches = (checkForOperator.isRightAssociative() && hasAfter) || (!checkForOperator.isRightAssociative() && !hasAfter);
 
-                    final Object nextAfterToken = i + 2 < tokens.size() ? tokens.get(i + 2) : null;
-                    if (Parser.isType(nextAfterToken, TokenType.OPEN_PARENTHESIS) || Parser.isType(nextAfterToken, TokenType.OPEN_SQUARE_BRACKET) ||
-                        Parser.isType(nextAfterToken, TokenType.OPEN_CURLY_BRACKET)) {
-                        i++;
-                        continue;
-                    }
-
-
-                    final Object before = i > 0 ? tokens.get(i - 1) : null;
-                    final Object after = i < tokens.size() - 1 ? tokens.get(i + 1) : null;
-
-                    final boolean hasBefore = Parser.isEvaluableToValue(before);
-                    final boolean hasAfter = Parser.isEvaluableToValue(after);
-
-                    final boolean leftMatches = (checkForOperator.isLeftAssociative() && hasBefore) || (!checkForOperator.isLeftAssociative() && !hasBefore);
-                    final boolean rightMatches = (checkForOperator.isRightAssociative() && hasAfter) || (!checkForOperator.isRightAssociative() && !hasAfter);
+        if (!leftMatches || !rightMatches) {
+            return null;
+        }
 
-                    if (!leftMatches || !rightMatches) {
-                        continue;
-                    }
 
+        final Object beforeBefore = i > 1 ? tokens.get(i - 2) : null;
+        final Object afterAfter = i < tokens.size() - 2 ? tokens.get(i + 2) : null;
 
-                    final Object beforeBefore = i > 1 ? tokens.get(i - 2) : null;
-                    final Object afterAfter = i < tokens.size() - 2 ? tokens.get(i + 2) : null;
+        if (Parser.isType(beforeBefore, TokenType.DOT) || Parser.isType(afterAfter, TokenType.DOT) ||
+            (checkForOperator.isLeftAssociative() && isDisallowedBeforeBeforeTokenOnLeftAssociative(beforeBefore))) {
+            return null;
+        } else if (isBlockCloser(before)) {
+            return null;
+        }
 
-                    if (Parser.isType(beforeBefore, TokenType.DOT) || Parser.isType(afterAfter, TokenType.DOT) ||
-                        (checkForOperator.isLeftAssociative() && isDisallowedBeforeBeforeTokenOnLeftAssociative(beforeBefore))) {
-                        continue;
-                    } else if (isBlockCloser(before)) {
-                        continue;
-                    }
 
+        // must not be an unfinished statement
+        int depthStartPosition = i;
+        int currentDepthDiff = 0;
+        for (int j = depthStartPosition; j > 0; j--) {
+            final Object tokenBefore = tokens.get(j);
 
-                    // must not be an unfinished statement
-                    int depthStartPosition = i;
-                    int currentDepthDiff = 0;
-                    for (int j = depthStartPosition; j > 0; j--) {
-                        final Object tokenBefore = tokens.get(j);
+            if (currentDepthDiff == 0 && isStatementSeparator(tokenBefore)) {
+                depthStartPosition = j + 1;
+                break;
+            }
 
-                        if (currentDepthDiff == 0 && isStatementSeparator(tokenBefore)) {
-                            depthStartPosition = j + 1;
-                            break;
-                        }
+            if (isBlockOpener(tokenBefore)) {
+                currentDepthDiff--;
+            } else if (isBlockCloser(tokenBefore)) {
+                currentDepthDiff++;
+            }
 
-                        if (isBlockOpener(tokenBefore)) {
-                            currentDepthDiff--;
-                        } else if (isBlockCloser(tokenBefore)) {
-                            currentDepthDiff++;
-                        }
+            if (currentDepthDiff < 0 || j == 1) {
+                depthStartPosition = j + 1;
+                break;
+            }
+        }
 
-                        if (currentDepthDiff < 0 || j == 1) {
-                            depthStartPosition = j + 1;
-                            break;
-                        }
-                    }
+        boolean foundUnallowedToken = false;
+        for (int j = depthStartPosition; j < tokens.size(); j++) {
+            final Object next = tokens.get(j);
 
-                    boolean foundUnallowedToken = false;
-                    for (int j = depthStartPosition; j < tokens.size(); j++) {
-                        final Object next = tokens.get(j);
-
-                        if (isBlockOpener(next)) {
-                            foundUnallowedToken = true;
-                            break;
-                        }
-                        if (isBlockCloser(next) || isStatementSeparator(next)) {
-                            break;
-                        }
-
-                        if (isPipelineOperator && j != i && Parser.isType(next, TokenType.OPERATOR) && !((Token) next).getValue().equals("|>") && !((Token) next).getValue().equals(">|")) {
-                            foundUnallowedToken = true;
-                            break;
-                        }
-                    }
-                    if (foundUnallowedToken) continue;
+            if (isBlockOpener(next)) {
+                foundUnallowedToken = true;
+                break;
+            }
+            if (isBlockCloser(next) || isStatementSeparator(next)) {
+                break;
+            }
 
+            if (isPipelineOperator && j != i && Parser.isType(next, TokenType.OPERATOR) && !((Token) next).getValue().equals("|>") && !((Token) next).getValue().equals(">|")) {
+                foundUnallowedToken = true;
+                break;
+            }
+        }
+        if (foundUnallowedToken) return null;
 
-                    // all criteria met
-                    final ParserNode operatorParentNode = new ParserNode(ParserNode.NodeType.EXPRESSION, checkForOperator);
-                    if (checkForOperator.isLeftAssociative()) operatorParentNode.addChild(before);
-                    if (checkForOperator.isRightAssociative()) operatorParentNode.addChild(after);
 
-                    final int leftIndex = checkForOperator.isLeftAssociative() ? i - 1 : i;
-                    final int rightIndex = checkForOperator.isRightAssociative() ? i + 1 : i;
+        // all criteria met
+        final ParserNode operatorParentNode = new ParserNode(ParserNode.NodeType.EXPRESSION, checkForOperator);
+        if (checkForOperator.isLeftAssociative()) operatorParentNode.addChild(before);
+        if (checkForOperator.isRightAssociative()) operatorParentNode.addChild(after);
 
-                    return new OperatorMatch(operatorParentNode, leftIndex, rightIndex);
-                }
-            }
-        }
+        final int leftIndex = checkForOperator.isLeftAssociative() ? i - 1 : i;
+        final int rightIndex = checkForOperator.isRightAssociative() ? i + 1 : i;
 
-        return null;
+        return new OperatorMatch(operatorParentNode, leftIndex, rightIndex);
     }
 
     private static boolean isDisallowedBeforeBeforeTokenOnLeftAssociative(Object beforeBefore) {
@@ -0,0 +1,84 @@
+package de.yanwittmann.menter.operator;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Prefix tree over the symbols of a set of operators, used by the lexer to find the longest operator at a position
+ * in a single pass over the source.
+ */
+public class OperatorTrie {
+
+    private final Node root = new Node();
+
+    public OperatorTrie(Collection<Operator> operators) {
+        for (Operator operator : operators) {
+            insert(operator.getSymbol());
+        }
+    }
+
+    private void insert(String symbol) {
+        Node node = root;
+        for (int i = 0; i < symbol.length(); i++) {
+            node = node.getOrCreateChild(symbol.charAt(i));
+        }
+        node.symbol = symbol;
+    }
+
+    /**
+     * Finds the longest operator symbol that starts at the given position in the source.
+     *
+     * @param source    the source to search in
+     * @param start     the index of the first character of the operator
+     * @param maxLength the maximum length of the operator, or <code>-1</code> for no limit
+     * @return the operator symbol or <code>null</code> if no operator starts at this position
+     */
+    public String findLongestMatch(CharSequence source, int start, int maxLength) {
+        final int end = maxLength < 0 ? source.length() : Math.min(source.length(), start + maxLength);
+        String longest = null;
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            node = node.getChild(source.charAt(i));
+            if (node == null) break;
+            if (node.symbol != null) longest = node.symbol;
+        }
+        return longest;
+    }
+
+    public String findLongestMatch(CharSequence source, int start) {
+        return findLongestMatch(source, start, -1);
+    }
+
+    public boolean isOperator(CharSequence symbol) {
+        Node node = root;
+        for (int i = 0; i < symbol.length() && node != null; i++) {
+            node = node.getChild(symbol.charAt(i));
+        }
+        return node != null && node.symbol != null;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String symbol;
+
+        private Node getChild(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        private Node getOrCreateChild(char c) {
+            final Node existing = getChild(c);
+            if (existing != null) return existing;
+
+            final Node child = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = child;
+            return child;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.yanwittmann.menter.operator;
 
 import de.yanwittmann.menter.interpreter.structure.value.PrimitiveValueType;
 import de.yanwittmann.menter.interpreter.structure.value.Value;
+import de.yanwittmann.menter.parser.Grammar;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -15,6 +16,9 @@ public class Operators {
     private static int BIG_DECIMAL_DIVISION_SCALE = 20;
 
     private final List<Operator> operators = new ArrayList<>();
+    private volatile OperatorTrie operatorTrie;
+    private volatile Grammar grammar;
+    private volatile String fingerprint;
 
     public static void setBigDecimalDivisionScale(int bigDecimalDivisionScale) {
         if (bigDecimalDivisionScale < 0) {
@@ -329,10 +333,60 @@ public class Operators {
                         .thenComparing(o -> o.isLeftAssociative() ? 0 : 1)
                         .reversed()
         );
+        operatorTrie = null;
+        grammar = null;
+        fingerprint = null;
     }
 
     public void remove(Operator operator) {
         operators.remove(operator);
+        operatorTrie = null;
+        grammar = null;
+        fingerprint = null;
+    }
+
+    /**
+     * @return a prefix tree over all operator symbols, which is rebuilt after the operators have been modified.
+     */
+    public OperatorTrie getOperatorTrie() {
+        OperatorTrie trie = operatorTrie;
+        if (trie == null) {
+            trie = new OperatorTrie(operators);
+            operatorTrie = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * @return the parser rules for these operators, which are compiled once and shared by all parsers that use this
+     * instance. The grammar is recompiled after the operators have been modified.
+     */
+    public Grammar getGrammar() {
+        Grammar compiled = grammar;
+        if (compiled == null) {
+            compiled = Grammar.compile(this);
+            grammar = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return a description of the symbols, precedences and associativity of all operators in their order. Two
+     * instances with the same fingerprint create the same syntax trees for every source.
+     */
+    public String getFingerprint() {
+        String description = fingerprint;
+        if (description == null) {
+            final StringBuilder builder = new StringBuilder();
+            for (Operator operator : operators) {
+                builder.append(operator.getSymbol()).append(' ').append(operator.getPrecedence()).append(' ')
+                        .append(operator.isLeftAssociative()).append(' ').append(operator.isRightAssociative()).append(' ')
+                        .append(operator.shouldCreateParserRule()).append('\n');
+            }
+            description = builder.toString();
+            fingerprint = description;
+        }
+        return description;
     }
 
     public List<Operator> getOperators() {
@@ -0,0 +1,312 @@
+package de.yanwittmann.menter.parser;
+
+import de.yanwittmann.menter.lexer.Lexer;
+import de.yanwittmann.menter.lexer.Token;
+import de.yanwittmann.menter.operator.Operator;
+import de.yanwittmann.menter.operator.Operators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable syntax tree that is stored in a few flat arrays instead of one object per node and token.<br>
+ * Every node and token of the tree is identified by an <code>int</code> index. The children of a node are stored next
+ * to each other, so that they can be addressed by the index of the first child and the amount of children. Values
+ * (token text and node values like operators) are stored once in a constant pool and referenced by index.<br>
+ * The root of the tree always has the index <code>0</code>. Use {@link #of(ParserNode)} to create a compact tree from
+ * a parsed tree and {@link #toParserNode()} to create a {@link ParserNode} tree that can be evaluated again.
+ */
+public final class CompactSyntaxTree {
+
+    /**
+     * The kind of elements that are neither a {@link ParserNode} nor a {@link Token}.
+     */
+    private static final int KIND_CONSTANT = Integer.MIN_VALUE;
+
+    /**
+     * Increased whenever the serialized format or the trees created by the parser change.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int CONSTANT_STRING = 0;
+    private static final int CONSTANT_OPERATOR = 1;
+
+    private static final ParserNode.NodeType[] NODE_TYPES = ParserNode.NodeType.values();
+    private static final Lexer.TokenType[] TOKEN_TYPES = Lexer.TokenType.values();
+
+    /**
+     * The names of all node and token types in order. Types are stored by their ordinal, so trees that have been
+     * stored with a different set of types cannot be read anymore, even if the {@link #FORMAT_VERSION} is the same.
+     */
+    public static final String TYPES_FINGERPRINT = Arrays.toString(NODE_TYPES) + Arrays.toString(TOKEN_TYPES);
+
+    /**
+     * Node types are stored as their ordinal, token types as <code>-(ordinal + 1)</code>.
+     */
+    private final int[] kinds;
+    private final int[] values;
+    private final int[] positions;
+    private final int[] firstChildren;
+    private final int[] childCounts;
+    private final Object[] constants;
+
+    private CompactSyntaxTree(int[] kinds, int[] values, int[] positions, int[] firstChildren, int[] childCounts, Object[] constants) {
+        this.kinds = kinds;
+        this.values = values;
+        this.positions = positions;
+        this.firstChildren = firstChildren;
+        this.childCounts = childCounts;
+        this.constants = constants;
+    }
+
+    public static CompactSyntaxTree of(ParserNode root) {
+        return new Builder().build(root);
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public boolean isToken(int element) {
+        return kinds[element] < 0 && kinds[element] != KIND_CONSTANT;
+    }
+
+    public boolean isNode(int element) {
+        return kinds[element] >= 0;
+    }
+
+    /**
+     * @return the node type of the element or <code>null</code> if the element is not a node.
+     */
+    public ParserNode.NodeType getNodeType(int element) {
+        return isNode(element) ? NODE_TYPES[kinds[element]] : null;
+    }
+
+    /**
+     * @return the token type of the element or <code>null</code> if the element is not a token.
+     */
+    public Lexer.TokenType getTokenType(int element) {
+        return isToken(element) ? TOKEN_TYPES[-kinds[element] - 1] : null;
+    }
+
+    /**
+     * @return the token text, the value of the node or the constant itself, depending on the kind of element.
+     */
+    public Object getValue(int element) {
+        return values[element] == -1 ? null : constants[values[element]];
+    }
+
+    /**
+     * @return the position of the token in the source or <code>-1</code>.
+     */
+    public int getPosition(int element) {
+        return positions[element];
+    }
+
+    public int getChildCount(int element) {
+        return childCounts[element];
+    }
+
+    public int getChild(int element, int index) {
+        if (index < 0 || index >= childCounts[element]) {
+            throw new IndexOutOfBoundsException("Child index " + index + " is out of bounds for element with " + childCounts[element] + " children");
+        }
+        return firstChildren[element] + index;
+    }
+
+    public ParserNode toParserNode() {
+        return (ParserNode) materialize(0);
+    }
+
+    private Object materialize(int element) {
+        if (isNode(element)) {
+            final List<Object> children = new ArrayList<>(childCounts[element]);
+            for (int i = 0; i < childCounts[element]; i++) {
+                children.add(materialize(firstChildren[element] + i));
+            }
+            return new ParserNode(getNodeType(element), getValue(element), children);
+        } else if (isToken(element)) {
+            return new Token(getTokenType(element), (String) getValue(element), positions[element]);
+        } else {
+            return getValue(element);
+        }
+    }
+
+    /**
+     * Writes the tree to the output. Operators are stored as their index in the given operators, so the tree must be
+     * read using an equivalent operator configuration.
+     *
+     * @throws IllegalArgumentException if the tree contains a value that is neither a string nor one of the operators
+     */
+    public void write(DataOutput out, Operators operators) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            out.writeInt(kinds[i]);
+            out.writeInt(values[i]);
+            out.writeInt(positions[i]);
+            out.writeInt(firstChildren[i]);
+            out.writeInt(childCounts[i]);
+        }
+
+        out.writeInt(constants.length);
+        for (Object constant : constants) {
+            if (constant instanceof String) {
+                final byte[] bytes = ((String) constant).getBytes(StandardCharsets.UTF_8);
+                out.writeByte(CONSTANT_STRING);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (constant instanceof Operator) {
+                final int index = operators.getOperators().indexOf(constant);
+                if (index == -1) {
+                    throw new IllegalArgumentException("Operator is not part of the operator configuration: " + constant);
+                }
+                out.writeByte(CONSTANT_OPERATOR);
+                out.writeInt(index);
+            } else {
+                throw new IllegalArgumentException("Cannot serialize value of type " + (constant == null ? null : constant.getClass().getName()));
+            }
+        }
+    }
+
+    /**
+     * Reads a tree that has been written by {@link #write(DataOutput, Operators)}.
+     *
+     * @throws IOException if the data has been written in a different format version or is corrupted
+     */
+    public static CompactSyntaxTree read(DataInput in, Operators operators) throws IOException {
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported syntax tree format version " + version + ", expected " + FORMAT_VERSION);
+        }
+
+        final int size = in.readInt();
+        if (size <= 0) {
+            throw new IOException("Invalid syntax tree size " + size);
+        }
+        final int[] kinds = new int[size];
+        final int[] values = new int[size];
+        final int[] positions = new int[size];
+        final int[] firstChildren = new int[size];
+        final int[] childCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = in.readInt();
+            values[i] = in.readInt();
+            positions[i] = in.readInt();
+            firstChildren[i] = in.readInt();
+            childCounts[i] = in.readInt();
+        }
+
+        final Object[] constants = new Object[in.readInt()];
+        for (int i = 0; i < constants.length; i++) {
+            final int type = in.readByte();
+            if (type == CONSTANT_STRING) {
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                constants[i] = new String(bytes, StandardCharsets.UTF_8);
+            } else if (type == CONSTANT_OPERATOR) {
+                final int index = in.readInt();
+                if (index < 0 || index >= operators.getOperators().size()) {
+                    throw new IOException("Invalid operator index " + index);
+                }
+                constants[i] = operators.getOperators().get(index);
+            } else {
+                throw new IOException("Invalid constant type " + type);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            final boolean validKind = kinds[i] == KIND_CONSTANT || (kinds[i] >= 0 ? kinds[i] < NODE_TYPES.length : -kinds[i] - 1 < TOKEN_TYPES.length);
+            if (!validKind || values[i] < -1 || values[i] >= constants.length || childCounts[i] < 0 ||
+                (childCounts[i] > 0 && (firstChildren[i] <= i || firstChildren[i] + childCounts[i] > size))) {
+                throw new IOException("Corrupted syntax tree element " + i);
+            }
+        }
+
+        if (kinds[0] < 0) {
+            throw new IOException("Root of syntax tree is not a node");
+        }
+
+        return new CompactSyntaxTree(kinds, values, positions, firstChildren, childCounts, constants);
+    }
+
+    private static class Builder {
+        private int[] kinds = new int[64];
+        private int[] values = new int[64];
+        private int[] positions = new int[64];
+        private int[] firstChildren = new int[64];
+        private int[] childCounts = new int[64];
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> constantIndices = new HashMap<>();
+        private int size = 0;
+
+        private CompactSyntaxTree build(ParserNode root) {
+            // breadth first, so that the children of every node are stored next to each other
+            final List<Object> elements = new ArrayList<>();
+            elements.add(root);
+            append(root);
+
+            for (int current = 0; current < elements.size(); current++) {
+                final Object element = elements.get(current);
+                if (!(element instanceof ParserNode)) continue;
+
+                final List<Object> children = ((ParserNode) element).getChildren();
+                firstChildren[current] = size;
+                childCounts[current] = children.size();
+                for (Object child : children) {
+                    elements.add(child);
+                    append(child);
+                }
+            }
+
+            return new CompactSyntaxTree(
+                    Arrays.copyOf(kinds, size), Arrays.copyOf(values, size), Arrays.copyOf(positions, size),
+                    Arrays.copyOf(firstChildren, size), Arrays.copyOf(childCounts, size), constants.toArray());
+        }
+
+        private void append(Object element) {
+            if (size == kinds.length) {
+                final int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                childCounts = Arrays.copyOf(childCounts, capacity);
+            }
+
+            if (element instanceof ParserNode) {
+                final ParserNode node = (ParserNode) element;
+                kinds[size] = node.getType().ordinal();
+                values[size] = constantIndex(node.getValue());
+                positions[size] = -1;
+            } else if (element instanceof Token) {
+                final Token token = (Token) element;
+                kinds[size] = -token.getType().ordinal() - 1;
+                values[size] = constantIndex(token.getValue());
+                positions[size] = token.getPosition();
+            } else {
+                kinds[size] = KIND_CONSTANT;
+                values[size] = constantIndex(element);
+                positions[size] = -1;
+            }
+            firstChildren[size] = 0;
+            childCounts[size] = 0;
+            size++;
+        }
+
+        private int constantIndex(Object constant) {
+            if (constant == null) return -1;
+            return constantIndices.computeIfAbsent(constant, c -> {
+                constants.add(c);
+                return constants.size() - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package de.yanwittmann.menter.parser;
+
+import de.yanwittmann.menter.operator.Operators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parser rules for one configuration of operators. A grammar cannot be modified once it has been compiled and
+ * does not hold any parsing state, so it can be shared by any number of {@link Parser} instances and threads.<br>
+ * Obtain it via {@link Operators#getGrammar()}, which compiles it once and recompiles it after the operators changed.
+ */
+public final class Grammar {
+
+    private final List<ParserRule> applyOnceRules;
+    private final List<ParserRule> rules;
+
+    Grammar(List<ParserRule> applyOnceRules, List<ParserRule> rules) {
+        this.applyOnceRules = Collections.unmodifiableList(new ArrayList<>(applyOnceRules));
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    public static Grammar compile(Operators operators) {
+        return Parser.compileGrammar(operators);
+    }
+
+    /**
+     * @return the rules that are applied once each before the other rules, in order.
+     */
+    public List<ParserRule> getApplyOnceRules() {
+        return applyOnceRules;
+    }
+
+    /**
+     * @return the rules that are applied repeatedly until none of them matches anymore, in order of priority.
+     */
+    public List<ParserRule> getRules() {
+        return rules;
+    }
+}
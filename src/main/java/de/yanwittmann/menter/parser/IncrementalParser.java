@@ -0,0 +1,203 @@
+package de.yanwittmann.menter.parser;
+
+import de.yanwittmann.menter.exceptions.ParsingException;
+import de.yanwittmann.menter.lexer.Lexer;
+import de.yanwittmann.menter.lexer.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the parsed state of a source that is edited over time, like a file open in an editor.<br>
+ * The source is split into sections of top-level statements, which are lexed and parsed independently. When the source
+ * is edited, only the sections that overlap with the edit (and their direct neighbours, since an edit can join or split
+ * statements) are lexed and parsed again; the parsed nodes of all other sections are reused as they are. If the edit
+ * opens a comment, string or regex that is not closed inside of these sections, all following sections are lexed and
+ * parsed again as well.<br>
+ * The sections are the same ones the {@link Parser} uses to parse a source, see
+ * {@link Parser#findSectionBoundaries(List)}.
+ */
+public class IncrementalParser {
+
+    private final Lexer lexer;
+    private final Parser parser;
+
+    private String source = "";
+    private List<Section> sections;
+    private ParserNode root;
+    private int lastParsedLength;
+
+    public IncrementalParser(Lexer lexer, Parser parser) {
+        this.lexer = lexer;
+        this.parser = parser;
+    }
+
+    /**
+     * Discards the previous state and parses the entire source.
+     */
+    public ParserNode parse(String source) {
+        this.source = source;
+        this.sections = null;
+        this.sections = parseRegion(source, 0, source.length(), false);
+        this.lastParsedLength = source.length();
+        return buildRoot();
+    }
+
+    /**
+     * Replaces <code>removedLength</code> characters starting at <code>offset</code> with the inserted text and
+     * returns the parsed tree of the new source. If the new source contains a syntax error, the edit is still
+     * applied to the source, but the next edit will parse the entire source again.
+     */
+    public ParserNode edit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IndexOutOfBoundsException("Edit range [" + offset + ", " + (offset + removedLength) + "] is out of bounds for source of length " + source.length());
+        }
+
+        final String newSource = source.substring(0, offset) + insertedText + source.substring(offset + removedLength);
+        if (sections == null || sections.isEmpty()) {
+            return parse(newSource);
+        }
+
+        final int delta = insertedText.length() - removedLength;
+        final int first = Math.max(0, findSection(offset) - 1);
+        int last = Math.min(sections.size() - 1, findSection(offset + removedLength) + 1);
+        final int regionStart = sections.get(first).start;
+        int regionEnd = sections.get(last).end + delta;
+
+        this.source = newSource;
+        List<Section> reparsed;
+        try {
+            reparsed = parseRegion(newSource, regionStart, regionEnd, last < sections.size() - 1);
+            if (reparsed == null) {
+                last = sections.size() - 1;
+                regionEnd = newSource.length();
+                reparsed = parseRegion(newSource, regionStart, regionEnd, false);
+            }
+        } catch (ParsingException e) {
+            this.sections = null;
+            throw e;
+        }
+
+        for (int i = last + 1; i < sections.size(); i++) {
+            sections.get(i).shift(delta);
+        }
+        sections.subList(first, last + 1).clear();
+        sections.addAll(first, reparsed);
+        this.lastParsedLength = regionEnd - regionStart;
+
+        return buildRoot();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public ParserNode getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the amount of characters that were lexed and parsed by the last call to {@link #parse(String)} or
+     * {@link #edit(int, int, String)}.
+     */
+    public int getLastParsedLength() {
+        return lastParsedLength;
+    }
+
+    private int findSection(int position) {
+        for (int i = 0; i < sections.size(); i++) {
+            if (position < sections.get(i).end) {
+                return i;
+            }
+        }
+        return sections.size() - 1;
+    }
+
+    private ParserNode buildRoot() {
+        root = new ParserNode(ParserNode.NodeType.ROOT);
+        for (Section section : sections) {
+            root.addChildren(section.nodes);
+        }
+        return root;
+    }
+
+    /**
+     * @param requireNeutralEnd whether <code>null</code> should be returned if the region ends inside of a comment,
+     *                          string or regex, since the sections after the region would be lexed differently then
+     */
+    private List<Section> parseRegion(String source, int regionStart, int regionEnd, boolean requireNeutralEnd) {
+        final String region = source.substring(regionStart, regionEnd);
+        final List<Token> tokens = lexer.parse(region);
+        if (requireNeutralEnd && !endsInNeutralState(region, tokens)) {
+            return null;
+        }
+        final List<Integer> boundaries = Parser.findSectionBoundaries(tokens);
+
+        final List<Section> sections = new ArrayList<>();
+        int sectionStart = 0;
+        int firstToken = 0;
+        int merges = 0;
+        ParsingException firstFailure = null;
+        for (int i = 0; i < boundaries.size(); i++) {
+            final int boundaryToken = boundaries.get(i);
+            final int sectionEnd = boundaryToken == tokens.size() ? region.length() : tokens.get(boundaryToken).getPosition();
+
+            final List<Object> nodes;
+            try {
+                nodes = parser.parseSection(tokens.subList(firstToken, boundaryToken));
+            } catch (ParsingException e) {
+                if (firstFailure == null) firstFailure = e;
+                if (i == boundaries.size() - 1 || merges >= Parser.MAX_SECTION_MERGES || !Parser.endsUnterminated(tokens, firstToken, boundaryToken)) {
+                    throw firstFailure;
+                }
+                // the section ends in the middle of a statement, try again together with the next section
+                merges++;
+                continue;
+            }
+
+            sections.add(new Section(regionStart + sectionStart, regionStart + sectionEnd, nodes));
+            sectionStart = sectionEnd;
+            firstToken = boundaryToken;
+            merges = 0;
+            firstFailure = null;
+        }
+
+        return sections;
+    }
+
+    /**
+     * The lexer skips unterminated comments, strings and regular expressions until the end of the input, so the
+     * lexer state at the end is neutral if only whitespace follows the last token.
+     */
+    private static boolean endsInNeutralState(String region, List<Token> tokens) {
+        int end = 0;
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            final Token token = tokens.get(i);
+            if (token.getType() != Lexer.TokenType.EOF && token.getPosition() >= 0) {
+                end = token.getPosition() + token.getLength();
+                break;
+            }
+        }
+        for (int i = end; i < region.length(); i++) {
+            if (!Character.isWhitespace(region.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static class Section {
+        private int start;
+        private int end;
+        private final List<Object> nodes;
+
+        private Section(int start, int end, List<Object> nodes) {
+            this.start = start;
+            this.end = end;
+            this.nodes = nodes;
+        }
+
+        private void shift(int delta) {
+            start += delta;
+            end += delta;
+        }
+    }
+}
@@ -16,39 +16,81 @@ public class Parser {
 
     private static final Logger LOG = LogManager.getLogger(Parser.class);
 
-    // lru cache for parsing rules using an operator instance as key
-    private final static Map<Operators, List<ParserRule>> CACHED_PARSE_RULES = new LinkedHashMap<Operators, List<ParserRule>>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Operators, List<ParserRule>> eldest) {
-            return size() > 5;
-        }
-    };
-    private final static Map<Operators, List<ParserRule>> CACHED_PARSE_ONCE_RULES = new LinkedHashMap<Operators, List<ParserRule>>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Operators, List<ParserRule>> eldest) {
-            return size() > 5;
-        }
-    };
-
     private final Operators operators;
-    private final List<ParserRule> rules = new ArrayList<>();
-    private final List<ParserRule> applyOnceRules = new ArrayList<>();
 
     public Parser(Operators operators) {
+        if (operators == null) {
+            throw new IllegalArgumentException("Operators cannot be null");
+        }
         this.operators = operators;
-        generateRules(operators);
     }
 
+    /**
+     * Parses the tokens into a tree of statements.<br>
+     * The rules are applied to one section of top-level statements at a time (see
+     * {@link #findSectionBoundaries(List)}), so that the number of rule applications grows with the size of the
+     * individual statements instead of the size of the entire source. A section that cannot be parsed by itself is
+     * only parsed again together with the following section if it ends in the middle of a statement (see
+     * {@link #endsUnterminated(List, int, int)}), at most {@link #MAX_SECTION_MERGES} times. Otherwise, parsing fails
+     * on the first section that cannot be parsed.
+     */
     public ParserNode parse(List<Token> tokens) {
-        generateRules(operators);
+        final Grammar grammar = operators.getGrammar();
+
+        final ParserNode root = new ParserNode(ParserNode.NodeType.ROOT);
+        final List<Integer> boundaries = findSectionBoundaries(tokens);
+
+        int sectionStart = 0;
+        int merges = 0;
+        ParsingException firstFailure = null;
+        for (int i = 0; i < boundaries.size(); i++) {
+            final List<Object> statements;
+            try {
+                statements = parseSection(grammar, tokens.subList(sectionStart, boundaries.get(i)));
+            } catch (ParsingException e) {
+                if (firstFailure == null) firstFailure = e;
+                if (i == boundaries.size() - 1 || merges >= MAX_SECTION_MERGES || !endsUnterminated(tokens, sectionStart, boundaries.get(i))) {
+                    throw firstFailure;
+                }
+                merges++;
+                continue;
+            }
+
+            root.addChildren(statements);
+            sectionStart = boundaries.get(i);
+            merges = 0;
+            firstFailure = null;
+        }
 
-        final List<Object> tokenTree = new ArrayList<>(tokens);
-        for (ParserRule rule : applyOnceRules) {
+        return root;
+    }
+
+    List<Object> parseSection(List<Token> tokens) {
+        return parseSection(operators.getGrammar(), tokens);
+    }
+
+    private List<Object> parseSection(Grammar grammar, List<Token> tokens) {
+        final List<Object> tokenTree = new ArrayList<>(tokens.size() + 1);
+        for (Token token : tokens) {
+            // materialize the values, so that the tree does not keep the entire source reachable
+            token.getValue();
+            tokenTree.add(token);
+        }
+        if (tokenTree.isEmpty() || !isType(tokenTree.get(tokenTree.size() - 1), TokenType.EOF)) {
+            tokenTree.add(new Token(TokenType.EOF, ""));
+        }
+
+        for (ParserRule rule : grammar.getApplyOnceRules()) {
             while (rule.match(tokenTree)) ;
         }
 
+        // every round scans the whole section again: most rules match brackets, statement chains or operator
+        // precedence across an unbounded range and rewrite their earliest match, so a rewrite can enable a match that
+        // starts anywhere to its left and limiting the rules to the neighbourhood of the rewrite would change the tree
+        final Set<Object> presentTypes = new HashSet<>();
         while (true) {
-            if (rules.stream().noneMatch(rule -> rule.match(tokenTree))) {
+            ParserRule.collectPresentTypes(tokenTree, presentTypes);
+            if (!matchAnyRule(grammar.getRules(), tokenTree, presentTypes)) {
                 break;
             } else if (!isType(tokenTree.get(tokenTree.size() - 1), TokenType.EOF)) {
                 tokenTree.add(new Token(TokenType.EOF, ""));
@@ -83,10 +125,133 @@ public class Parser {
             }
         }
 
-        final ParserNode root = new ParserNode(ParserNode.NodeType.ROOT);
-        root.addChildren(tokenTree);
+        return tokenTree;
+    }
 
-        return root;
+    /**
+     * Applies the first rule that matches. Rules that cannot match because none of their trigger types are present in
+     * the token list are skipped without scanning the tokens.
+     */
+    private static boolean matchAnyRule(List<ParserRule> rules, List<Object> tokenTree, Set<Object> presentTypes) {
+        for (ParserRule rule : rules) {
+            if (rule.isApplicable(presentTypes) && rule.match(tokenTree)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The maximum amount of sections a section that cannot be parsed by itself is merged with.
+     */
+    static final int MAX_SECTION_MERGES = 8;
+
+    /**
+     * Checks whether the section ends in the middle of a statement that may continue in the next section: inside of
+     * brackets or after an operator, a dot, a comma, an opening bracket or a keyword. Only such sections are parsed
+     * again together with the following section if they cannot be parsed by themselves.
+     */
+    static boolean endsUnterminated(List<Token> tokens, int start, int end) {
+        int depth = 0;
+        Token last = null;
+        for (int i = start; i < end; i++) {
+            final Token token = tokens.get(i);
+            switch (token.getType()) {
+                case OPEN_PARENTHESIS:
+                case OPEN_SQUARE_BRACKET:
+                case OPEN_CURLY_BRACKET:
+                    depth++;
+                    break;
+                case CLOSE_PARENTHESIS:
+                case CLOSE_SQUARE_BRACKET:
+                case CLOSE_CURLY_BRACKET:
+                    depth--;
+                    break;
+                case NEWLINE:
+                case COMMENT:
+                case EOF:
+                    continue;
+            }
+            last = token;
+        }
+        if (depth > 0) return true;
+        if (last == null) return false;
+
+        switch (last.getType()) {
+            case OPERATOR:
+            case DOT:
+            case COMMA:
+            case KEYWORD:
+            case OPEN_PARENTHESIS:
+            case OPEN_SQUARE_BRACKET:
+            case OPEN_CURLY_BRACKET:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private final static Set<String> STATEMENT_CONTINUING_KEYWORDS = new HashSet<>(Arrays.asList("else", "elif", "instanceof", "as", "in", "inline"));
+
+    /**
+     * Finds the indices of the tokens that start a new section of top-level statements. A section ends with a newline
+     * outside any brackets, if the next line is not indented and does not continue the statement, like lines that
+     * start with an operator, a dot, a comma, a closing bracket or <code>else</code>. The last element is always the
+     * size of the token list.<br>
+     * Tokens without a position (that have not been created by the lexer) never start a section.
+     */
+    static List<Integer> findSectionBoundaries(List<Token> tokens) {
+        final List<Integer> boundaries = new ArrayList<>();
+        int depth = 0;
+
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            final Token token = tokens.get(i);
+            switch (token.getType()) {
+                case OPEN_PARENTHESIS:
+                case OPEN_SQUARE_BRACKET:
+                case OPEN_CURLY_BRACKET:
+                    depth++;
+                    break;
+                case CLOSE_PARENTHESIS:
+                case CLOSE_SQUARE_BRACKET:
+                case CLOSE_CURLY_BRACKET:
+                    depth = Math.max(0, depth - 1);
+                    break;
+                case NEWLINE:
+                    if (depth == 0 && token.getPosition() >= 0 && tokens.get(i + 1).getPosition() == token.getPosition() + 1 &&
+                        isSectionStart(tokens, i + 1)) {
+                        boundaries.add(i + 1);
+                    }
+                    break;
+            }
+        }
+
+        boundaries.add(tokens.size());
+        return boundaries;
+    }
+
+    private static boolean isSectionStart(List<Token> tokens, int index) {
+        for (int i = index; i < tokens.size(); i++) {
+            final Token token = tokens.get(i);
+            switch (token.getType()) {
+                case NEWLINE:
+                case COMMENT:
+                    continue;
+                case EOF:
+                case OPERATOR:
+                case DOT:
+                case COMMA:
+                case CLOSE_PARENTHESIS:
+                case CLOSE_SQUARE_BRACKET:
+                case CLOSE_CURLY_BRACKET:
+                    return false;
+                case KEYWORD:
+                    return !STATEMENT_CONTINUING_KEYWORDS.contains(token.getValue());
+                default:
+                    return true;
+            }
+        }
+        return false;
     }
 
     public String toString(List<Object> tokens) {
@@ -219,29 +384,27 @@ public class Parser {
         return false;
     }
 
+    /**
+     * Creates the rules for the given operators. Use {@link Operators#getGrammar()} to obtain the shared grammar of an
+     * operator configuration instead.
+     */
     @SuppressWarnings("unchecked")
-    protected void generateRules(Operators operators) {
+    static Grammar compileGrammar(Operators operators) {
 
         if (operators == null) {
             throw new IllegalArgumentException("Operators cannot be null");
         }
 
-        // check if rules have already been generated for these operators
-        this.rules.clear();
-        this.applyOnceRules.clear();
-        if (CACHED_PARSE_RULES.containsKey(operators) && CACHED_PARSE_ONCE_RULES.containsKey(operators)) {
-            this.rules.addAll(CACHED_PARSE_RULES.get(operators));
-            this.applyOnceRules.addAll(CACHED_PARSE_ONCE_RULES.get(operators));
-            return;
-        }
+        final List<ParserRule> rules = new ArrayList<>();
+        final List<ParserRule> applyOnceRules = new ArrayList<>();
 
         // remove comments
-        this.applyOnceRules.add(createRemoveTokensRule(new Object[]{TokenType.COMMENT}));
+        applyOnceRules.add(createRemoveTokensRule(new Object[]{TokenType.COMMENT}));
         // remove double newlines
-        this.applyOnceRules.add(createRemoveDoubleTokensRule(new Object[]{TokenType.NEWLINE, TokenType.SEMICOLON}));
+        applyOnceRules.add(createRemoveDoubleTokensRule(new Object[]{TokenType.NEWLINE, TokenType.SEMICOLON}));
 
         // remove newlines in front of specific tokens that indicate that the previous line is not yet finished
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object token = tokens.get(i);
                 if (isType(token, TokenType.NEWLINE) && i + 1 < tokens.size()) {
@@ -258,7 +421,7 @@ public class Parser {
         // transform x instanceof y  into  x.type() == y
         // "" instanceof "string"
         // "".type() == "string"
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
 
@@ -289,7 +452,7 @@ public class Parser {
         });
 
         // transform else if to elif
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object token = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -304,7 +467,7 @@ public class Parser {
         });
 
         // remove newline in front of elif and else
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -319,7 +482,7 @@ public class Parser {
         });
 
         // check for invalid constructor calls with 'new'
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -333,7 +496,7 @@ public class Parser {
         });
 
         // check for operators in parentheses and transform them to a potential function call
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -379,7 +542,7 @@ public class Parser {
         });
 
         // validate parentheses [] {} ()
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             final Stack<Object> stack = new Stack<>();
 
             for (int i = 0; i < tokens.size(); i++) {
@@ -409,7 +572,7 @@ public class Parser {
         });
 
         // validate that there are no keywords/identifiers right after closed square/curly brackets
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -430,7 +593,7 @@ public class Parser {
         });
 
         // validate that there are no two literals right after each other
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -444,7 +607,7 @@ public class Parser {
         });
 
         // validate that there are no two identifiers right after each other
-        this.applyOnceRules.add(tokens -> {
+        applyOnceRules.add(tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -481,7 +644,7 @@ public class Parser {
         // convert the pipeline operator to a function call
         final Operator pipelineOperatorLast = operators.findOperator("|>", true, true);
         final Operator pipelineOperatorFirst = operators.findOperator(">|", true, true);
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.EXPRESSION}, tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
 
@@ -569,10 +732,10 @@ public class Parser {
                 }
             }
             return false;
-        });
+        }));
 
         // check for curly bracket pairs with only map elements inside to transform into a map
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.CURLY_BRACKET_PAIR}, tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
 
@@ -589,9 +752,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
         // check for curly bracket pairs with only statements (except for the last one optionally) to transform into a CODE_BLOCK
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.CURLY_BRACKET_PAIR}, tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object currentToken = tokens.get(i);
 
@@ -608,9 +771,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.FUNCTION_DECLARATION}, tokens -> {
             for (final Object currentToken : tokens) {
                 if (isType(currentToken, ParserNode.NodeType.FUNCTION_DECLARATION)) {
                     final ParserNode node = (ParserNode) currentToken;
@@ -634,10 +797,10 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // detect import statement
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"import"}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -686,19 +849,19 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // detect export statement
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.EXPORT_STATEMENT, (t) -> null, 0, (t, i) -> !isType(t, TokenType.KEYWORD) && !isStatementFinisher(t), (t, i) -> true, (t, i) -> t,
+        rules.add(ParserRule.triggeredBy(new Object[]{"export"}, ParserRule.inOrderRule(ParserNode.NodeType.EXPORT_STATEMENT, (t) -> null, 0, (t, i) -> !isType(t, TokenType.KEYWORD) && !isStatementFinisher(t), (t, i) -> true, (t, i) -> t,
                 t -> isKeyword(t, "export"),
                 t -> isType(t, ParserNode.NodeType.ARRAY),
                 t -> isKeyword(t, "as"),
                 t -> isType(t, TokenType.IDENTIFIER),
                 Parser::isStatementFinisher
-        ));
+        )));
 
         // function calls
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.PARENTHESIS_PAIR}, tokens -> {
             int state = 0;
             int start = -1;
 
@@ -728,10 +891,10 @@ public class Parser {
                 return true;
             }
             return false;
-        });
+        }));
 
         // accessor rule, this is a bit complicated
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.DOT, ParserNode.NodeType.SQUARE_BRACKET_PAIR, ParserNode.NodeType.FUNCTION_CALL}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -848,9 +1011,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.SQUARE_BRACKET_PAIR}, tokens -> {
             int state = 0;
 
             for (int i = 0; i < tokens.size(); i++) {
@@ -868,22 +1031,27 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_PARENTHESIS, TokenType.CLOSE_PARENTHESIS, ParserNode.NodeType.PARENTHESIS_PAIR,
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPEN_PARENTHESIS}, tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_PARENTHESIS, TokenType.CLOSE_PARENTHESIS, ParserNode.NodeType.PARENTHESIS_PAIR,
                 new Object[]{TokenType.OPEN_PARENTHESIS, TokenType.OPEN_SQUARE_BRACKET, TokenType.OPEN_CURLY_BRACKET},
                 new Object[]{},
                 new Object[]{}
-        ));
+        )));
 
+        // one rule per precedence level, the operators are sorted by precedence
+        final Set<Integer> precedences = new LinkedHashSet<>();
         for (Operator operator : operators.getOperators()) {
             if (operator.shouldCreateParserRule()) {
-                rules.add(operator.makeParserRule(operators.findOperatorsWithPrecedence(operator.getPrecedence())));
+                precedences.add(operator.getPrecedence());
             }
         }
+        for (Integer precedence : precedences) {
+            rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPERATOR}, Operator.makePrecedenceParserRule(operators.findOperatorsWithPrecedence(precedence))));
+        }
 
         // rule for combining any operator with the = operator
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPERATOR}, tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object token = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -909,11 +1077,11 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // rule for operator ->
         final Operator inlineOperator = operators.findOperator("->", true, true);
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPERATOR}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -975,10 +1143,10 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // map elements
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPERATOR}, tokens -> {
             int state = 0;
             int key = -1;
             int value = -1;
@@ -1017,22 +1185,22 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // rule for parenthesis pairs
-        rules.add(tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_CURLY_BRACKET, TokenType.CLOSE_CURLY_BRACKET, ParserNode.NodeType.CURLY_BRACKET_PAIR,
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPEN_CURLY_BRACKET}, tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_CURLY_BRACKET, TokenType.CLOSE_CURLY_BRACKET, ParserNode.NodeType.CURLY_BRACKET_PAIR,
                 new Object[]{TokenType.OPEN_PARENTHESIS, TokenType.OPEN_SQUARE_BRACKET, TokenType.OPEN_CURLY_BRACKET},
                 new Object[]{ParserNode.NodeType.MAP_ELEMENT, ParserNode.NodeType.STATEMENT, ParserNode.NodeType.RETURN_STATEMENT, TokenType.NEWLINE},
                 new Object[]{TokenType.NEWLINE}
-        ));
-        rules.add(tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_SQUARE_BRACKET, TokenType.CLOSE_SQUARE_BRACKET, ParserNode.NodeType.SQUARE_BRACKET_PAIR,
+        )));
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPEN_SQUARE_BRACKET}, tokens -> Parser.createParenthesisRule(tokens, TokenType.OPEN_SQUARE_BRACKET, TokenType.CLOSE_SQUARE_BRACKET, ParserNode.NodeType.SQUARE_BRACKET_PAIR,
                 new Object[]{TokenType.OPEN_PARENTHESIS, TokenType.OPEN_SQUARE_BRACKET, TokenType.OPEN_CURLY_BRACKET},
                 new Object[]{},
                 new Object[]{}
-        ));
+        )));
 
         // listed elements , separated
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.COMMA}, tokens -> {
             final ParserNode node = new ParserNode(ParserNode.NodeType.LISTED_ELEMENTS);
             int start = -1;
             int end = -1;
@@ -1100,10 +1268,10 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // find constructor calls
-        this.rules.add(ParserRule.inOrderRule(ParserNode.NodeType.CONSTRUCTOR_CALL, (t) -> null, 0, (t, i) -> !isType(t, TokenType.KEYWORD), (t, i) -> true,
+        rules.add(ParserRule.triggeredBy(new Object[]{"new"}, ParserRule.inOrderRule(ParserNode.NodeType.CONSTRUCTOR_CALL, (t) -> null, 0, (t, i) -> !isType(t, TokenType.KEYWORD), (t, i) -> true,
                 (t, i) -> {
                     if (isType(t, ParserNode.NodeType.FUNCTION_CALL)) {
                         return ((ParserNode) t).getChildren();
@@ -1128,11 +1296,11 @@ public class Parser {
                 },
                 t -> isKeyword(t, "new"),
                 t -> isIdentifier(t) || isType(t, ParserNode.NodeType.FUNCTION_CALL)
-        ));
+        )));
 
         final Operator defaultAssignmentOperator = operators.findOperator("=", true, true);
         // assignment
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.OPERATOR, ParserNode.NodeType.ASSIGNMENT_COMBINED_OPERATOR}, tokens -> {
             int start = -1;
             int end = -1;
             boolean isCombinedAssignment = false;
@@ -1179,14 +1347,14 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // conditions via CONDITIONAL_BRANCH wrapped in CONDITIONAL
         // if (condition) { ... } elif (condition) { ... } else { ... }
         // if CONDITIONAL_BRANCH: condition, body
         // elif CONDITIONAL_BRANCH: condition, body
         // else CONDITIONAL_BRANCH: body
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"if", "elif"}, tokens -> {
             for (int i = 0; i < tokens.size(); i++) {
                 final Object token = tokens.get(i);
                 final Object nextToken = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
@@ -1204,9 +1372,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"if"}, tokens -> {
             final ParserNode node = new ParserNode(ParserNode.NodeType.CONDITIONAL);
             int start = -1;
             int end = -1;
@@ -1278,10 +1446,10 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // we have to extract the brackets of the for loops first, as they would prevent operators matching otherwise
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"for"}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -1329,9 +1497,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"for"}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -1387,12 +1555,12 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // we have to extract the brackets of the while loops first, as they could prevent operators matching otherwise
         // honestly, this is only necessary for the 'for' loop, but for consistency and not to risk future bugs,
         // we do it for all loops
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"while"}, tokens -> {
             int state = 0;
             int convertIndex = -1;
 
@@ -1419,9 +1587,9 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"while"}, tokens -> {
             int state = 0;
             int start = -1;
             int end = -1;
@@ -1477,10 +1645,10 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
 
         // function declaration via assignment of a code block
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.FUNCTION_CALL}, ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
                 (t, i) -> {
                     if (i == 0) {
                         return isType(t, ParserNode.NodeType.FUNCTION_CALL) ? ((ParserNode) t).getChildren() : t;
@@ -1493,9 +1661,9 @@ public class Parser {
                 t -> isType(t, ParserNode.NodeType.FUNCTION_CALL),
                 t -> isOperator(t, "="),
                 token -> isEvaluableToValue(token) || isType(token, ParserNode.NodeType.CODE_BLOCK) || (isType(token, ParserNode.NodeType.MAP) && ((ParserNode) token).isLeaf()) || isType(token, ParserNode.NodeType.RETURN_STATEMENT)
-        ));
+        )));
         // ... or directly followed by a code block
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.FUNCTION_CALL}, ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
                 (t, i) -> {
                     if (i == 0) {
                         return isType(t, ParserNode.NodeType.FUNCTION_CALL) ? ((ParserNode) t).getChildren() : t;
@@ -1507,9 +1675,9 @@ public class Parser {
                 },
                 t -> isType(t, ParserNode.NodeType.FUNCTION_CALL),
                 token -> isType(token, ParserNode.NodeType.CODE_BLOCK) || (isType(token, ParserNode.NodeType.MAP) && ((ParserNode) token).isLeaf()) || isType(token, ParserNode.NodeType.RETURN_STATEMENT)
-        ));
+        )));
         // ... same as above, but for IDENTIFIER_ACCESSED
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.IDENTIFIER_ACCESSED}, ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true,
                 (t, i) -> {
                     if (i == 0) {
                         // extract the parenthesis pair, which is the last child of the IDENTIFIER_ACCESSED
@@ -1522,15 +1690,15 @@ public class Parser {
                 },
                 t -> isType(t, ParserNode.NodeType.IDENTIFIER_ACCESSED),
                 token -> isType(token, ParserNode.NodeType.CODE_BLOCK) || (isType(token, ParserNode.NodeType.MAP) && ((ParserNode) token).isLeaf()) || isType(token, ParserNode.NodeType.RETURN_STATEMENT)
-        ));
+        )));
         // function declaration via inline function
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true, (t, i) -> t,
+        rules.add(ParserRule.triggeredBy(new Object[]{ParserNode.NodeType.FUNCTION_INLINE}, ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> !isOperator(t, "="), (t, i) -> true, (t, i) -> t,
                 Parser::isIdentifier,
                 t -> isOperator(t, "="),
                 t -> isType(t, ParserNode.NodeType.FUNCTION_INLINE)
-        ));
+        )));
         // native functions
-        rules.add(ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> true, (t, i) -> true,
+        rules.add(ParserRule.triggeredBy(new Object[]{"native"}, ParserRule.inOrderRule(ParserNode.NodeType.FUNCTION_DECLARATION, (t) -> null, 1, (t, i) -> true, (t, i) -> true,
                 (t, i) -> {
                     if (i == 1) {
                         return isType(t, ParserNode.NodeType.FUNCTION_CALL) ? ((ParserNode) t).getChildren() : t;
@@ -1540,10 +1708,10 @@ public class Parser {
                 },
                 t -> isKeyword(t, "native"),
                 t -> isType(t, ParserNode.NodeType.FUNCTION_CALL)
-        ));
+        )));
 
         // important: this rule must be the last one to make sure, that statements are created last
-        rules.add(tokens -> {
+        rules.add(ParserRule.triggeredBy(new Object[]{"return"}, tokens -> {
             int state = 0;
             int start = -1;
             for (int i = 0; i < tokens.size(); i++) {
@@ -1576,7 +1744,7 @@ public class Parser {
             }
 
             return false;
-        });
+        }));
         rules.add(tokens -> {
             int state = 0;
             int start = -1;
@@ -1621,10 +1789,9 @@ public class Parser {
         });
 
         // remove all remaining unnecessary tokens like newlines
-        rules.add(createRemoveTokensRule(new Object[]{TokenType.NEWLINE, TokenType.SEMICOLON, TokenType.EOF}));
+        rules.add(ParserRule.triggeredBy(new Object[]{TokenType.NEWLINE, TokenType.SEMICOLON, TokenType.EOF}, createRemoveTokensRule(new Object[]{TokenType.NEWLINE, TokenType.SEMICOLON, TokenType.EOF})));
 
-        CACHED_PARSE_RULES.put(operators, new ArrayList<>(this.rules));
-        CACHED_PARSE_ONCE_RULES.put(operators, new ArrayList<>(this.applyOnceRules));
+        return new Grammar(applyOnceRules, rules);
     }
 
     private static void appendOrPrependValueForPipelineOperator(ParserNode parenthesisPair, Object node, boolean prepend) {
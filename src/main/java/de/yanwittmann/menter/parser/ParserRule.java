@@ -1,12 +1,14 @@
 package de.yanwittmann.menter.parser;
 
 import de.yanwittmann.menter.interpreter.MenterDebugger;
+import de.yanwittmann.menter.lexer.Lexer;
 import de.yanwittmann.menter.lexer.Token;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -19,6 +21,52 @@ public interface ParserRule {
 
     boolean match(List<Object> tokens);
 
+    /**
+     * @param presentTypes the token types, node types and keywords that currently exist in the token list
+     * @return <code>false</code> if the rule cannot match the token list, so that the parser can skip it.
+     */
+    default boolean isApplicable(Set<Object> presentTypes) {
+        return true;
+    }
+
+    /**
+     * Wraps a rule that can only match if at least one of the given token types, node types or keywords is present in
+     * the token list.
+     */
+    static ParserRule triggeredBy(Object[] triggers, ParserRule rule) {
+        return new ParserRule() {
+            @Override
+            public boolean match(List<Object> tokens) {
+                return rule.match(tokens);
+            }
+
+            @Override
+            public boolean isApplicable(Set<Object> presentTypes) {
+                for (Object trigger : triggers) {
+                    if (presentTypes.contains(trigger)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    static void collectPresentTypes(List<Object> tokens, Set<Object> presentTypes) {
+        presentTypes.clear();
+        for (Object token : tokens) {
+            if (token instanceof Token) {
+                final Token cast = (Token) token;
+                presentTypes.add(cast.getType());
+                if (cast.getType() == Lexer.TokenType.KEYWORD) {
+                    presentTypes.add(cast.getValue());
+                }
+            } else if (token instanceof ParserNode) {
+                presentTypes.add(((ParserNode) token).getType());
+            }
+        }
+    }
+
     static void replace(List<Object> tokenTree, Object replacement, int startIndex, int endIndex) {
         if (endIndex + 1 > startIndex) {
             tokenTree.subList(startIndex, endIndex + 1).clear();
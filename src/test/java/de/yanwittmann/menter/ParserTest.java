@@ -4,14 +4,29 @@ import de.yanwittmann.menter.exceptions.ParsingException;
 import de.yanwittmann.menter.interpreter.MenterDebugger;
 import de.yanwittmann.menter.io.ExpressionFileReader;
 import de.yanwittmann.menter.lexer.Lexer;
+import de.yanwittmann.menter.lexer.Token;
+import de.yanwittmann.menter.interpreter.structure.value.Value;
+import de.yanwittmann.menter.operator.Operator;
+import de.yanwittmann.menter.operator.OperatorUtilities;
 import de.yanwittmann.menter.operator.Operators;
+import de.yanwittmann.menter.parser.CompactSyntaxTree;
+import de.yanwittmann.menter.parser.Grammar;
+import de.yanwittmann.menter.parser.IncrementalParser;
 import de.yanwittmann.menter.parser.Parser;
+import de.yanwittmann.menter.parser.ParserNode;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 class ParserTest {
 
@@ -1533,9 +1548,184 @@ class ParserTest {
                 parser.toString(reader.parse(new File("src/test/resources/lang/other/inlineFunctions.mtr")).getChildren()));
     }
 
+    @Test
+    public void lexerTokenValuesTest() {
+        final Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+        final List<Token> tokens = lexer.parse("abc = \"x\\ty\"; r/\\d\\//i ::: abc 0x1F # end");
+
+        Assertions.assertEquals("[IDENTIFIER: abc, OPERATOR: =, STRING_LITERAL: \"x\ty\", SEMICOLON: ;, REGEX_LITERAL: r/\\d//i, " +
+                                "OPERATOR: :::, IDENTIFIER: abc, NUMBER_LITERAL: 0x1F, COMMENT: # end, EOF]", tokens.toString());
+        // identifiers are interned per lexed source
+        Assertions.assertSame(tokens.get(0).getValue(), tokens.get(6).getValue());
+    }
+
+    @Test
+    public void lexerSourceInputTest() throws IOException {
+        final Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+        final File file = new File("src/test/resources/lang/other/inlineFunctions.mtr");
+        final String expected = lexer.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).toString();
+
+        Assertions.assertEquals(expected, lexer.parse(file).toString());
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Assertions.assertEquals(expected, lexer.parse(reader).toString());
+        }
+    }
+
+    @Test
+    public void lexerCustomOperatorsTest() {
+        final Operators operators = new Operators();
+        final Lexer lexer = new Lexer(operators);
+        Assertions.assertEquals("[IDENTIFIER: a, OPERATOR: <=, OPERATOR: >, IDENTIFIER: b, EOF]", lexer.parse("a <=> b").toString());
+
+        final Operator spaceship = OperatorUtilities.makeDouble("<=>", 80, (left, right) -> new Value(left.compareTo(right)));
+        operators.add(spaceship);
+        Assertions.assertEquals("[IDENTIFIER: a, OPERATOR: <=>, IDENTIFIER: b, EOF]", lexer.parse("a <=> b").toString());
+
+        operators.remove(spaceship);
+        Assertions.assertEquals("[IDENTIFIER: a, OPERATOR: <=, OPERATOR: >, IDENTIFIER: b, EOF]", lexer.parse("a <=> b").toString());
+    }
+
+    @Test
+    public void compactSyntaxTreeTest() throws IOException {
+        final Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+        final Parser parser = new Parser(ParserTest.DEFAULT_OPERATORS);
+        final ParserNode root = parser.parse(lexer.parse(new File("src/test/resources/lang/other/inlineFunctions.mtr")));
+
+        final CompactSyntaxTree tree = CompactSyntaxTree.of(root);
+        Assertions.assertEquals(root.toString(), tree.toParserNode().toString());
+
+        final ParserNode statement = parser.parse(lexer.parse("a = 3 + b")).getChildren().stream().map(ParserNode.class::cast).findFirst().get();
+        final CompactSyntaxTree small = CompactSyntaxTree.of(statement);
+        Assertions.assertEquals(ParserNode.NodeType.STATEMENT, small.getNodeType(0));
+        final int assignment = small.getChild(0, 0);
+        Assertions.assertEquals(ParserNode.NodeType.ASSIGNMENT, small.getNodeType(assignment));
+        Assertions.assertEquals(2, small.getChildCount(assignment));
+        final int identifier = small.getChild(assignment, 0);
+        Assertions.assertTrue(small.isToken(identifier));
+        Assertions.assertEquals(Lexer.TokenType.IDENTIFIER, small.getTokenType(identifier));
+        Assertions.assertEquals("a", small.getValue(identifier));
+        Assertions.assertEquals(0, small.getPosition(identifier));
+        Assertions.assertEquals("(+) (110)", String.valueOf(small.getValue(small.getChild(assignment, 1))));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> small.getChild(identifier, 0));
+    }
+
+    @Test
+    public void sharedGrammarTest() throws InterruptedException {
+        final Operators operators = new Operators();
+        final Grammar grammar = operators.getGrammar();
+        Assertions.assertSame(grammar, operators.getGrammar());
+
+        final String expression = "a = [1, 2, 3].map(x -> x * 2); if (a.size() > 2) print(a) else print(\"none\")";
+        final String expected = new Parser(operators).parse(new Lexer(operators).parse(expression)).toString();
+        final List<String> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> results.add(new Parser(operators).parse(new Lexer(operators).parse(expression)).toString())));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        Assertions.assertEquals(Collections.nCopies(4, expected), results);
+
+        final Operator spaceship = OperatorUtilities.makeDouble("<=>", 80, (left, right) -> new Value(left.compareTo(right)));
+        operators.add(spaceship);
+        Assertions.assertNotSame(grammar, operators.getGrammar());
+        assertParsedTreeEquals("STATEMENT\n" +
+                               "└─ EXPRESSION: (<=>) (80)\n" +
+                               "   ├─ IDENTIFIER: a\n" +
+                               "   └─ IDENTIFIER: b", "a <=> b", operators);
+    }
+
+    @Test
+    public void sectionMergeTest() {
+        final Parser parser = new Parser(ParserTest.DEFAULT_OPERATORS);
+        final Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+
+        final StringBuilder statements = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            statements.append("x").append(i).append(" = [").append(i).append(", 2].map(y -> y * 2)\n");
+        }
+        Assertions.assertEquals(400, parser.parse(lexer.parse(statements)).getChildren().size());
+
+        // a syntax error in the first statement fails without parsing the rest of the source again and again, an
+        // unterminated statement is only merged with a limited amount of following statements
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            Assertions.assertThrows(ParsingException.class, () -> parser.parse(lexer.parse("a b c = 1\n" + statements)));
+            Assertions.assertThrows(ParsingException.class, () -> parser.parse(lexer.parse("a = 1 +\n" + statements)));
+        });
+    }
+
+    @Test
+    public void incrementalParserTest() {
+        final Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+        final Parser parser = new Parser(ParserTest.DEFAULT_OPERATORS);
+        final IncrementalParser incremental = new IncrementalParser(lexer, parser);
+
+        final String source = "# setup\n" +
+                              "add = (a, b) -> {\n" +
+                              "    a + b\n" +
+                              "}\n" +
+                              "\n" +
+                              "x = add(1, 2)\n" +
+                              "if (x > 2) print(x)\n" +
+                              "else print(0)\n" +
+                              "y = [1, 2, 3]\n" +
+                              "  .map(x -> x * 2)\n" +
+                              "z = x\n" +
+                              "  + 4\n";
+        assertIncrementalParseEquals(parser, lexer, incremental.parse(source), source);
+
+        int offset = source.indexOf("add(1, 2)") + 4;
+        ParserNode edited = incremental.edit(offset, 1, "10");
+        assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+        Assertions.assertTrue(incremental.getLastParsedLength() < incremental.getSource().length());
+
+        // join two statements by removing the line break between them
+        offset = incremental.getSource().indexOf("\nz = x");
+        edited = incremental.edit(offset, 1, " ; ");
+        assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+
+        // open a block that spans over the following statements, then close it again
+        offset = incremental.getSource().indexOf("x = add");
+        final int blockStart = offset;
+        Assertions.assertThrows(ParsingException.class, () -> incremental.edit(blockStart, 0, "for (i in [1]) {\n"));
+        edited = incremental.edit(incremental.getSource().length(), 0, "}\n");
+        assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+
+        Assertions.assertThrows(ParsingException.class, () -> incremental.edit(0, 0, "= ="));
+        edited = incremental.edit(0, 3, "");
+        assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+
+        // opening a comment, string or regex that is not closed changes how all following statements are lexed
+        final String statements = "a = 1\nb = 2\nc = 3\nd = 4\ne = 5\n";
+        for (String opening : new String[]{"##", "\"", "r/"}) {
+            incremental.parse(statements);
+            edited = incremental.edit(statements.indexOf("b"), 0, opening);
+            assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+            edited = incremental.edit(statements.indexOf("b"), opening.length(), "");
+            assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+        }
+
+        // closing the comment again only comments out the statements in between
+        incremental.parse(statements);
+        incremental.edit(statements.indexOf("b"), 0, "##");
+        edited = incremental.edit(incremental.getSource().indexOf("d"), 0, "##\n");
+        assertIncrementalParseEquals(parser, lexer, edited, incremental.getSource());
+        Assertions.assertEquals(3, edited.getChildren().size());
+    }
+
+    private void assertIncrementalParseEquals(Parser parser, Lexer lexer, ParserNode incremental, String source) {
+        Assertions.assertEquals(
+                parser.toString(parser.parse(lexer.parse(source)).getChildren()),
+                parser.toString(incremental.getChildren()));
+    }
+
     private void assertParsedTreeEquals(String expected, String expression) {
-        Parser parser = new Parser(ParserTest.DEFAULT_OPERATORS);
-        Lexer lexer = new Lexer(ParserTest.DEFAULT_OPERATORS);
+        assertParsedTreeEquals(expected, expression, ParserTest.DEFAULT_OPERATORS);
+    }
+
+    private void assertParsedTreeEquals(String expected, String expression, Operators operators) {
+        Parser parser = new Parser(operators);
+        Lexer lexer = new Lexer(operators);
         Assertions.assertEquals(
                 expected,
                 parser.toString(parser.parse(lexer.parse(expression)).getChildren()
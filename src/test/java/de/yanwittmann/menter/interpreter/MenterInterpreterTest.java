@@ -2,12 +2,31 @@ package de.yanwittmann.menter.interpreter;
 
 import de.yanwittmann.menter.exceptions.MenterExecutionException;
 import de.yanwittmann.menter.exceptions.ParsingException;
+import de.yanwittmann.menter.interpreter.structure.GlobalContext;
+import de.yanwittmann.menter.interpreter.structure.NativeFunctionRegistry;
+import de.yanwittmann.menter.interpreter.structure.value.Value;
+import de.yanwittmann.menter.io.ModuleIndex;
 import de.yanwittmann.menter.operator.Operators;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 class MenterInterpreterTest {
 
@@ -21,6 +40,345 @@ class MenterInterpreterTest {
         evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.add(1, 2);");
     }
 
+    @Test
+    public void parallelLoadingTest() {
+        for (int threads : new int[]{1, 4}) {
+            MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+            interpreter.setLoaderThreadCount(threads);
+            interpreter.loadFile(new File("src/test/resources/lang/other/moduleParsing"));
+            interpreter.finishLoadingContexts();
+
+            evaluateAndAssertEqual(interpreter, "6.282", "import other; other.myAttribute;");
+            evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.add(1, 2);");
+        }
+    }
+
+    @Test
+    public void coreFileSnapshotTest() {
+        // the second interpreter restores the core files from the snapshot of the first one
+        for (int i = 0; i < 2; i++) {
+            MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+            evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.round(2.6);");
+            evaluateAndAssertEqual(interpreter, "2", "import math inline; floor(2.6);");
+        }
+
+        // a different operator configuration creates its own snapshot
+        final Operators operators = new Operators();
+        operators.remove(operators.findOperator("**", true, true));
+        MenterInterpreter interpreter = new MenterInterpreter(operators);
+        evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.round(2.6);");
+    }
+
+    @Test
+    public void lazyModuleInitializationTest() {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.loadContext("export [value] as lazyModule; value = 4", "lazy.mtr");
+        interpreter.loadContext("export [value] as brokenModule; value = unknownSymbol", "broken.mtr");
+        interpreter.finishLoadingContexts();
+
+        // the broken module is never evaluated until it is accessed
+        evaluateAndAssertEqual(interpreter, "4", "import lazyModule; lazyModule.value");
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.evaluate("import brokenModule; brokenModule.value"));
+
+        final MenterInterpreter eagerInterpreter = new MenterInterpreter(new Operators());
+        eagerInterpreter.setLazyModuleInitialization(false);
+        eagerInterpreter.loadContext("export [value] as brokenModule; value = unknownSymbol", "broken.mtr");
+        Assertions.assertThrows(MenterExecutionException.class, eagerInterpreter::finishLoadingContexts);
+    }
+
+    @Test
+    public void nativeFunctionRegistryTest() {
+        Assertions.assertNotNull(NativeFunctionRegistry.getGlobal().find("math.mtr", "sin"));
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.getNativeFunctionRegistry().register("twice.mtr", "twice", values -> new Value(values.get(0).getNumericValue().multiply(BigDecimal.valueOf(2))));
+        interpreter.loadContext("native twice()\nexport [twice] as twiceModule", "twice.mtr");
+        interpreter.finishLoadingContexts();
+        evaluateAndAssertEqual(interpreter, "6", "import twiceModule; twiceModule.twice(3)");
+
+        // functions registered for a single runtime are not visible to others
+        final MenterInterpreter otherInterpreter = new MenterInterpreter(new Operators());
+        otherInterpreter.loadContext("native twice()\nexport [twice] as twiceModule", "twice.mtr");
+        otherInterpreter.finishLoadingContexts();
+        Assertions.assertThrows(MenterExecutionException.class, () -> otherInterpreter.evaluate("import twiceModule; twiceModule.twice(3)"));
+    }
+
+    @Test
+    public void moduleIndexTest(@TempDir Path directory) throws IOException {
+        final File moduleDirectory = directory.resolve("modules").toFile();
+        final File moduleFile = new File(moduleDirectory, "indexed.mtr");
+        final File indexFile = directory.resolve("modules.index").toFile();
+        FileUtils.write(moduleFile, "export [value] as indexedModule\nvalue = 5", StandardCharsets.UTF_8);
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.setModuleIndex(indexFile);
+        interpreter.addModulePath(moduleDirectory);
+        evaluateAndAssertEqual(interpreter, "5", "import indexedModule; indexedModule.value");
+        Assertions.assertTrue(indexFile.isFile());
+
+        // a new index reads the entries from the file and notices changed files
+        Assertions.assertEquals(Collections.singletonList("indexedModule"), new ModuleIndex(indexFile).getFile(moduleFile).getExports());
+        FileUtils.write(moduleFile, "import indexedModule\nexport [value] as renamedModule\nvalue = 5", StandardCharsets.UTF_8);
+        final ModuleIndex.FileEntry entry = new ModuleIndex(indexFile).getFile(moduleFile);
+        Assertions.assertEquals(Collections.singletonList("renamedModule"), entry.getExports());
+        Assertions.assertEquals(Collections.singletonList("indexedModule"), entry.getImports());
+    }
+
+    @Test
+    public void contextDependencyOrderTest() {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.setLazyModuleInitialization(false);
+        interpreter.setEvaluationThreadCount(4);
+        interpreter.loadContext("import middle\nexport [z] as top\nz = middle.y + 1", "top.mtr");
+        interpreter.loadContext("import base\nexport [y] as middle\ny = base.x * 3", "middle.mtr");
+        interpreter.loadContext("export [x] as base\nx = 2", "base.mtr");
+        interpreter.loadContext("export [w] as other\nw = 4", "other.mtr");
+        interpreter.finishLoadingContexts();
+        evaluateAndAssertEqual(interpreter, "7", "import top; top.z");
+
+        final MenterInterpreter cyclicInterpreter = new MenterInterpreter(new Operators());
+        cyclicInterpreter.loadContext("import cycleB\nexport [a] as cycleA\na = 1", "cycleA.mtr");
+        cyclicInterpreter.loadContext("import cycleA\nexport [b] as cycleB\nb = 2", "cycleB.mtr");
+        final MenterExecutionException exception = Assertions.assertThrows(MenterExecutionException.class, cyclicInterpreter::finishLoadingContexts);
+        Assertions.assertTrue(exception.getMessage().contains("cycleA.mtr -> cycleB.mtr -> cycleA.mtr"), exception.getMessage());
+    }
+
+    @Test
+    public void reloadFileTest(@TempDir Path directory) throws IOException {
+        final File baseFile = directory.resolve("base.mtr").toFile();
+        FileUtils.write(baseFile, "export [value] as reloadBase\nvalue = 1", StandardCharsets.UTF_8);
+        FileUtils.write(directory.resolve("user.mtr").toFile(), "import reloadBase\nexport [doubled] as reloadUser\ndoubled = reloadBase.value * 2", StandardCharsets.UTF_8);
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.loadFile(directory.toFile());
+        interpreter.finishLoadingContexts();
+        evaluateAndAssertEqual(interpreter, "2", "import reloadUser; reloadUser.doubled");
+
+        // the importing context is evaluated again using the new module
+        FileUtils.write(baseFile, "export [value] as reloadBase\nvalue = 5", StandardCharsets.UTF_8);
+        interpreter.reloadFile(baseFile);
+        evaluateAndAssertEqual(interpreter, "10", "import reloadUser; reloadUser.doubled");
+        evaluateAndAssertEqual(interpreter, "5", "import reloadBase; reloadBase.value");
+
+        // a file that no longer exports an imported module is not reloaded
+        FileUtils.write(baseFile, "export [value] as renamedBase\nvalue = 7", StandardCharsets.UTF_8);
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.reloadFile(baseFile));
+        evaluateAndAssertEqual(interpreter, "10", "import reloadUser; reloadUser.doubled");
+    }
+
+    @Test
+    public void reloadFileRebindsImportersTest(@TempDir Path directory) throws IOException {
+        final File baseFile = directory.resolve("base.mtr").toFile();
+        FileUtils.write(baseFile, "export [value] as reloadBase\nvalue = 1", StandardCharsets.UTF_8);
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.loadFile(baseFile);
+        interpreter.finishLoadingContexts();
+        interpreter.evaluateInContextOf("session", "import reloadBase; counter = 0; counter = counter + 1");
+        final GlobalContext fork = interpreter.forkContext("session");
+
+        // contexts that do not export modules are not evaluated again, but see the new module
+        FileUtils.write(baseFile, "export [value] as reloadBase\nvalue = 5", StandardCharsets.UTF_8);
+        interpreter.reloadFile(baseFile);
+        Assertions.assertEquals("1", interpreter.evaluateInContextOf("session", "counter").toDisplayString());
+        Assertions.assertEquals("5", interpreter.evaluateInContextOf("session", "reloadBase.value").toDisplayString());
+
+        // forks keep the module they have been created with
+        Assertions.assertEquals("1", interpreter.evaluateInContext(fork, "reloadBase.value").toDisplayString());
+    }
+
+    @Test
+    public void contextAndModuleLookupTest() {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        Assertions.assertTrue(interpreter.doesModuleExist("math"));
+        Assertions.assertFalse(interpreter.doesModuleExist("sessionModule"));
+
+        interpreter.evaluateInContextOf("session1", "export [x] as sessionModule; x = 3");
+        Assertions.assertTrue(interpreter.doesModuleExist("sessionModule"));
+        Assertions.assertTrue(interpreter.listAllExportedModules().contains("sessionModule"));
+        Assertions.assertEquals("3", interpreter.evaluateInContextOf("session2", "import sessionModule; sessionModule.x").toDisplayString());
+        Assertions.assertEquals("4", interpreter.evaluateInContextOf("session1", "x + 1").toDisplayString());
+
+        interpreter.deleteContext("session1");
+        Assertions.assertFalse(interpreter.doesModuleExist("sessionModule"));
+        Assertions.assertNull(interpreter.findContext("session1"));
+        Assertions.assertNotNull(interpreter.findContext("session2"));
+    }
+
+    @Test
+    public void moduleArchiveTest(@TempDir Path directory) throws IOException {
+        final File archive = directory.resolve("modules.mtrc").toFile();
+        new MenterInterpreter(new Operators()).compileArchive(Collections.singletonList(new File("src/test/resources/lang/other/moduleParsing")), archive);
+        Assertions.assertTrue(archive.isFile());
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.loadFile(archive);
+        interpreter.finishLoadingContexts();
+        evaluateAndAssertEqual(interpreter, "6.282", "import other; other.myAttribute;");
+        evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.add(1, 2);");
+
+        // archives can only be loaded with the operators they have been compiled with
+        final Operators operators = new Operators();
+        operators.remove(operators.findOperator("**", true, true));
+        Assertions.assertThrows(MenterExecutionException.class, () -> new MenterInterpreter(operators).loadFile(archive));
+
+        // the auto imports of the loading runtime are used, not the ones of the compiling runtime
+        final File source = directory.resolve("autoImported.mtr").toFile();
+        final File autoImportArchive = directory.resolve("autoImported.mtrc").toFile();
+        FileUtils.write(source, "rounded = round(2.6)\nexport [rounded] as autoImported\n", StandardCharsets.UTF_8);
+        final MenterInterpreter compiler = new MenterInterpreter(new Operators());
+        compiler.getModuleOptions().addAutoImport("math inline");
+        compiler.compileArchive(Collections.singletonList(source), autoImportArchive);
+
+        final MenterInterpreter withoutAutoImports = new MenterInterpreter(new Operators());
+        withoutAutoImports.loadFile(autoImportArchive);
+        withoutAutoImports.finishLoadingContexts();
+        Assertions.assertThrows(MenterExecutionException.class, () -> withoutAutoImports.evaluate("import autoImported; autoImported.rounded"));
+
+        final MenterInterpreter withAutoImports = new MenterInterpreter(new Operators());
+        withAutoImports.getModuleOptions().addAutoImport("math inline");
+        withAutoImports.loadFile(autoImportArchive);
+        withAutoImports.finishLoadingContexts();
+        evaluateAndAssertEqual(withAutoImports, "3", "import autoImported; autoImported.rounded");
+    }
+
+    @Test
+    public void moduleResourcesTest(@TempDir Path directory) throws IOException {
+        final File archive = directory.resolve("bundle.mtrc").toFile();
+        new MenterInterpreter(new Operators()).compileArchive(Collections.singletonList(new File("src/test/resources/lang/other/moduleParsing")), archive);
+
+        final File jar = directory.resolve("modules.jar").toFile();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("META-INF/menter/modules.properties"));
+            out.write("other=bundle.mtrc\nmath=bundle.mtrc\njarModule=lib/jarModule.mtr\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("META-INF/menter/bundle.mtrc"));
+            out.write(FileUtils.readFileToByteArray(archive));
+            out.putNextEntry(new ZipEntry("META-INF/menter/lib/jarModule.mtr"));
+            out.write("import other\ndoubled = other.myAttribute * 2\nexport [doubled] as jarModule\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.addModulePath(jar);
+        interpreter.addModulePath("classpath:lang/other/moduleResources");
+        interpreter.finishLoadingContexts();
+
+        evaluateAndAssertEqual(interpreter, "12.564", "import jarModule; jarModule.doubled;");
+        evaluateAndAssertEqual(interpreter, "6.282", "import other; other.myAttribute;");
+        evaluateAndAssertEqual(interpreter, "42", "import resourceModule; resourceModule.value;");
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.evaluate("import missingModule; missingModule.value;"));
+    }
+
+    @Test
+    public void forkContextTest() {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.finishLoadingContexts();
+        interpreter.evaluateInContextOf("base", "import math as ma; counter = 1; increment() { counter += 1 }; getCounter() { counter }");
+
+        final GlobalContext first = interpreter.forkContext("base");
+        final GlobalContext second = interpreter.forkContext("base");
+        Assertions.assertEquals("11", interpreter.evaluateInContext(first, "counter = 10; increment(); counter").toDisplayString());
+        Assertions.assertEquals("2", interpreter.evaluateInContext(second, "increment(); getCounter()").toDisplayString());
+        Assertions.assertEquals("8", interpreter.evaluateInContext(first, "added = 5; ma.round(2.6) + added").toDisplayString());
+
+        // forks of forks are isolated from their parent as well
+        final GlobalContext third = first.fork();
+        Assertions.assertEquals("12", interpreter.evaluateInContext(third, "increment(); getCounter()").toDisplayString());
+        Assertions.assertEquals("11", interpreter.evaluateInContext(first, "counter").toDisplayString());
+
+        Assertions.assertEquals("1", interpreter.evaluateInContextOf("base", "counter").toDisplayString());
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.evaluateInContextOf("base", "added"));
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.forkContext("missing"));
+
+        // functions in objects and closures are evaluated in the fork, objects and arrays are copied
+        interpreter.evaluateInContextOf("containers", "lib = {inc: () -> { counter = counter + 1 }}; counter = 0\n" +
+                                                      "cache = {}; put(k) { cache[k] = 1 }; list = [1, 2]; alias = list\n" +
+                                                      "makeCounter() { c = 0; () -> { c += 1 } }; next = makeCounter()");
+        final GlobalContext fourth = interpreter.forkContext("containers");
+        Assertions.assertEquals("2", interpreter.evaluateInContext(fourth, "lib.inc(); lib.inc()").toDisplayString());
+        Assertions.assertEquals("{a: 1}", interpreter.evaluateInContext(fourth, "put(\"a\"); cache").toDisplayString());
+        Assertions.assertEquals("[1, 2, 3]", interpreter.evaluateInContext(fourth, "list[2] = 3; alias").toDisplayString());
+        Assertions.assertEquals("2", interpreter.evaluateInContext(fourth, "next(); next()").toDisplayString());
+        Assertions.assertEquals("1", interpreter.evaluateInContext(interpreter.forkContext("containers"), "next()").toDisplayString());
+        Assertions.assertEquals("0", interpreter.evaluateInContextOf("containers", "counter").toDisplayString());
+        Assertions.assertEquals("[]", interpreter.evaluateInContextOf("containers", "cache").toDisplayString());
+        Assertions.assertEquals("[1, 2]", interpreter.evaluateInContextOf("containers", "alias").toDisplayString());
+    }
+
+    @Test
+    public void concurrentForkEvaluationTest() throws Exception {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.finishLoadingContexts();
+        interpreter.evaluateInContextOf("points", "export [make] as pointModule; make(x) { {x: x, getX: () -> self.x} }");
+        interpreter.evaluateInContextOf("base", "import pointModule; import math inline");
+
+        // the methods of the objects are created by the module context, which is shared by all forks
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final GlobalContext fork = interpreter.forkContext("base");
+                results.add(executor.submit(() -> interpreter.evaluateInContext(fork, "sum = 0; for (i in range(1, 50)) sum = sum + pointModule.make(i).getX(); sum").toDisplayString()));
+            }
+            for (Future<String> result : results) {
+                Assertions.assertEquals("1275", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void forkModuleIsolationTest() throws Exception {
+        final MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.finishLoadingContexts();
+        interpreter.evaluateInContextOf("counters", "export [count, increment] as counterModule; count = 0; increment() { count = count + 1 }");
+        interpreter.evaluateInContextOf("base", "import counterModule; import math inline; inc = counterModule.increment");
+
+        // module variables that are modified by a fork are copied into the fork as well
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final GlobalContext fork = interpreter.forkContext("base");
+                results.add(executor.submit(() -> interpreter.evaluateInContext(fork, "for (i in range(1, 100)) counterModule.increment(); inc(); counterModule.count").toDisplayString()));
+            }
+            for (Future<String> result : results) {
+                Assertions.assertEquals("101", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals("0", interpreter.evaluateInContextOf("base", "counterModule.count").toDisplayString());
+
+        // forks of forks start from the module state of their parent fork
+        final GlobalContext first = interpreter.forkContext("base");
+        Assertions.assertEquals("1", interpreter.evaluateInContext(first, "counterModule.increment(); counterModule.count").toDisplayString());
+        final GlobalContext second = first.fork();
+        Assertions.assertEquals("2", interpreter.evaluateInContext(second, "inc(); counterModule.count").toDisplayString());
+        Assertions.assertEquals("1", interpreter.evaluateInContext(first, "counterModule.count").toDisplayString());
+    }
+
+    @Test
+    public void syntaxTreeCacheTest(@TempDir Path cacheDirectory) {
+        MenterInterpreter interpreter = new MenterInterpreter(new Operators(), cacheDirectory.toFile());
+        interpreter.loadFile(new File("src/test/resources/lang/other/moduleParsing"));
+        interpreter.finishLoadingContexts();
+
+        final File[] entries = cacheDirectory.toFile().listFiles();
+        Assertions.assertNotNull(entries);
+        // the core files are only cached if they have not been parsed by another interpreter before
+        Assertions.assertTrue(entries.length >= 2);
+
+        // the second interpreter reads all trees from the cache
+        interpreter = new MenterInterpreter(new Operators(), cacheDirectory.toFile());
+        interpreter.loadFile(new File("src/test/resources/lang/other/moduleParsing"));
+        interpreter.finishLoadingContexts();
+        Assertions.assertEquals(entries.length, cacheDirectory.toFile().listFiles().length);
+
+        evaluateAndAssertEqual(interpreter, "6.282", "import other; other.myAttribute;");
+        evaluateAndAssertEqual(interpreter, "3", "import math as ma; ma.add(1, 2);");
+    }
+
     @Test
     @Disabled
     public void assignmentsTest() {
@@ -198,12 +556,59 @@ class MenterInterpreterTest {
 
         evaluateAndAssertEqual(interpreter, "[3, 2, 1]", "[1, 2, 3].sort((a, b) -> b - a)");
         evaluateAndAssertEqual(interpreter, "[1, 2, 3]", "[1, 2, 3].sort((a, b) -> a - b)");
+        evaluateAndAssertEqual(interpreter, "[a, bb, ccc]", "[\"ccc\", \"a\", \"bb\"].sortBy(x -> x.size())");
+        evaluateAndAssertEqual(interpreter, "[{n: 1, k: b}, {n: 2, k: b}, {n: 3, k: a}]", "[{n: 3, k: \"a\"}, {n: 1, k: \"b\"}, {n: 2, k: \"b\"}].sortBy(x -> x.n)");
+        evaluateAndAssertEqual(interpreter, "{b: 1, c: 2, a: 3}", "{a: 3, b: 1, c: 2}.sortBy(x -> x)");
+        evaluateAndAssertEqual(interpreter, "[-20000, -19999]", "import math inline; range(1, 20000).map(x -> -x).sort().filter(x -> x < -19998)");
 
         evaluateAndAssertEqual(interpreter, "~ 8 - 7 ~", "[1, 2, 3, 3].map(x -> x + 5).filter(x -> x > 6).sort((a, b) -> b - a).distinct().join(\" - \", \"~ \", \" ~\")");
 
         evaluateAndAssertEqual(interpreter, "5", "[\"test\", \"hello\"].map(x -> x.size()).max()");
         evaluateAndAssertEqual(interpreter, "max", "[\"containsValue\", \"max\", \"test\"].max((a, b) -> b.size() - a.size())");
         evaluateAndAssertEqual(interpreter, "containsValue", "[\"containsValue\", \"max\", \"test\"].max((a, b) -> a.size() - b.size())");
+
+        // structural equality of nested values
+        evaluateAndAssertEqual(interpreter, "[[1, 2], {a: 1}, 3]", "[[1, 2], {a: 1}, [1, 2], {a: 1.0}, 3, 3.00].distinct()");
+        evaluateAndAssertEqual(interpreter, "true", "[[1, 2], [3]].contains([3])");
+        evaluateAndAssertEqual(interpreter, "true", "[4, 5].containsKey(1.0)");
+        evaluateAndAssertEqual(interpreter, "{1: 2, 2: 1, [1]: 1}", "[1, 2, 1, [1]].frequency()");
+        // keys are copied, so modifying a value after using it as a key does not change the key
+        evaluateAndAssertEqual(interpreter, "[x, false, 1]", "a = [1]; m = {}; m[a] = \"x\"; f = [a].frequency(); a[0] = 2; [m[[1]], m.containsKey([2]), f[[1]]]");
+
+        evaluateAndAssertEqual(interpreter, "[1, 2, 3, 4]", "[1, 2, 2, 3].union([3, 4])");
+        evaluateAndAssertEqual(interpreter, "[2, 3]", "[1, 2, 2, 3].intersect([3, 2, 5])");
+        evaluateAndAssertEqual(interpreter, "[1, [4]]", "[1, 2, [4], 3].difference([2, 3])");
+    }
+
+    @Test
+    public void setTest() {
+        MenterInterpreter interpreter = new MenterInterpreter(new Operators());
+        interpreter.finishLoadingContexts();
+
+        evaluateAndAssertEqual(interpreter, "{3, 1, 2}", "[3, 1, 2, 1, 3.0].toSet()");
+        evaluateAndAssertEqual(interpreter, "set", "[1].toSet().type()");
+        evaluateAndAssertEqual(interpreter, "{1, 2, 3}", "[3, 1, 2, 1].toSortedSet()");
+        evaluateAndAssertEqual(interpreter, "{3, 2, 1}", "[1, 3, 2].toSortedSet((a, b) -> b - a)");
+        evaluateAndAssertEqual(interpreter, "[true, false]", "s = [[1, 2], \"a\"].toSet(); [s.contains([1, 2]), s.contains(\"b\")]");
+        evaluateAndAssertEqual(interpreter, "{1, 4, 5}", "s = [1, 2].toSet(); s.add(4, 5); s.remove(2)");
+
+        // values without a natural order need a comparator, instead of being deduplicated by their size
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.evaluate("[[1], [2], [3, 4]].toSortedSet()"));
+        Assertions.assertThrows(MenterExecutionException.class, () -> interpreter.evaluate("s = [1, 2].toSortedSet(); s.add(\"a\")"));
+        evaluateAndAssertEqual(interpreter, "{[1], [2], [3, 4]}", "[[2], [1], [3, 4]].toSortedSet((a, b) -> a[0] - b[0])");
+
+        // elements are copied when they are added, so modifying the original value does not affect the set
+        evaluateAndAssertEqual(interpreter, "[true, false, {[1]}]", "a = [1]; s = [a].toSet(); a[1] = 2; [s.contains([1]), s.contains([1, 2]), s]");
+
+        evaluateAndAssertEqual(interpreter, "{1, 2, 3, 4}", "[1, 2, 3].toSet().union([3, 4].toSet())");
+        evaluateAndAssertEqual(interpreter, "{2, 3}", "[1, 2, 3].toSet().intersect([3, 4, 2])");
+        evaluateAndAssertEqual(interpreter, "{1}", "[1, 2, 3].toSortedSet().difference([3, 2].toSet())");
+        evaluateAndAssertEqual(interpreter, "[true, false]", "[[1].toSet().isSubsetOf([1, 2]), [3].toSet().isSubsetOf([1, 2])]");
+        evaluateAndAssertEqual(interpreter, "[1, 3]", "[1, 2, 3].union([3, 1].toSet()).intersect([1, 3].toSet())");
+
+        evaluateAndAssertEqual(interpreter, "6", "sum = 0; for (x in [1, 2, 3].toSet()) sum = sum + x; sum");
+        evaluateAndAssertEqual(interpreter, "3", "sum = 0; for ((i, x) in [5, 6, 7].toSet()) sum = sum + i; sum");
+        evaluateAndAssertEqual(interpreter, "[2, 3]", "[3, 2, 3].toSortedSet().values()");
     }
 
     @Test
@@ -332,6 +737,16 @@ class MenterInterpreterTest {
 
         evaluateAndAssertEqual(interpreter, "3", "" +
                                                  "[1, 2, 3].forEach((k, v) -> v)");
+
+        evaluateAndAssertEqual(interpreter, "a1b2", "" +
+                                                    "out = \"\"\n" +
+                                                    "for ((k, v) in {a: 1, b: 2}) out = out + k + v\n" +
+                                                    "out");
+        evaluateAndAssertEqual(interpreter, "[1, 2]", "" +
+                                                      "values = [1, 2]\n" +
+                                                      "for (v in values) v = 5\n" +
+                                                      "values");
+        evaluateAndAssertEqual(interpreter, "b2", "{a: 1, b: 2}.forEach((k, v) -> k + v)");
     }
 
     @Test
@@ -494,6 +909,27 @@ class MenterInterpreterTest {
                                                         "Manager = (name, age, departement) -> { $extends: Person(name, age + 1), $fields: [departement] }\n" +
                                                         "p = new Manager(\"John\", 20, \"HR\")\n" +
                                                         "[p.departement, p.age]");
+
+        // parent members are linked via a prototype, but are visible like own fields
+        evaluateAndAssertEqual(interpreter, "[[name, age, getAge, departement], John, 21]", "Person = (name, age) -> { $fields: [name, age], getAge: () -> self.age }\n" +
+                                                                          "Manager = (name, age, departement) -> { $extends: Person(name, age), $fields: [departement] }\n" +
+                                                                          "p = new Manager(\"John\", 20, \"HR\")\n" +
+                                                                          "p.age++\n" +
+                                                                          "[p.keys(), p.name, p.getAge()]");
+        evaluateAndAssertEqual(interpreter, "[b, 3]", "A = () -> { x: \"a\", y: 3 }\n" +
+                                                      "B = () -> { x: \"b\" }\n" +
+                                                      "C = () -> { $extends: [A(), B()] }\n" +
+                                                      "c = new C()\n" +
+                                                      "[c.x, c.y]");
+        evaluateAndAssertEqual(interpreter, "[{x: b, y: 3}, 2, true, true, false]", "A = () -> { x: \"a\", y: 3 }\n" +
+                                                                                "B = () -> { $extends: A(), x: \"b\" }\n" +
+                                                                                "b = new B()\n" +
+                                                                                "[b, b.size(), b.containsKey(\"y\"), b == {x: \"b\", y: 3}, b == {x: \"b\"}]");
+        evaluateAndAssertEqual(interpreter, "x1y2", "A = () -> { x: 1, y: 2 }\n" +
+                                                    "B = () -> { $extends: A() }\n" +
+                                                    "out = \"\"\n" +
+                                                    "for ((k, v) in new B()) out = out + k + v\n" +
+                                                    "out");
     }
 
     @Test